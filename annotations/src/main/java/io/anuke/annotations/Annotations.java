@@ -113,6 +113,12 @@ public class Annotations{
          */
         boolean unreliable() default false;
 
+        /**
+         * Whether invocations of this method are collected and sent together with others once per update, instead of in their own packet.
+         * Only use this for frequent methods that do not depend on being received in order with unbatched ones.
+         */
+        boolean batched() default false;
+
         /** Priority of this event. */
         PacketPriority priority() default PacketPriority.normal;
     }
@@ -21,6 +21,8 @@ public class MethodEntry{
     public final Loc local;
     /** Whether this method is unreliable and uses UDP. */
     public final boolean unreliable;
+    /** Whether this method is sent in a batch with other invocations once per update. */
+    public final boolean batched;
     /** Whether to forward this method call to all other clients when a client invokes it. Server only. */
     public final boolean forward;
     /** Unique method ID. */
@@ -31,7 +33,7 @@ public class MethodEntry{
     public final PacketPriority priority;
 
     public MethodEntry(String className, String targetMethod, Loc where, Variant target,
-                       Loc local, boolean unreliable, boolean forward, int id, ExecutableElement element, PacketPriority priority){
+                       Loc local, boolean unreliable, boolean batched, boolean forward, int id, ExecutableElement element, PacketPriority priority){
         this.className = className;
         this.forward = forward;
         this.targetMethod = targetMethod;
@@ -41,6 +43,7 @@ public class MethodEntry{
         this.id = id;
         this.element = element;
         this.unreliable = unreliable;
+        this.batched = batched;
         this.priority = priority;
     }
 
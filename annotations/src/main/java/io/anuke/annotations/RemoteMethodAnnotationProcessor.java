@@ -2,6 +2,7 @@ package io.anuke.annotations;
 
 import com.squareup.javapoet.*;
 import io.anuke.annotations.Annotations.Loc;
+import io.anuke.annotations.Annotations.PacketPriority;
 import io.anuke.annotations.Annotations.Remote;
 import io.anuke.annotations.IOFinder.ClassSerializer;
 
@@ -99,6 +100,11 @@ public class RemoteMethodAnnotationProcessor extends AbstractProcessor{
                         Utils.messager.printMessage(Kind.ERROR, "A @Remote method's targets() cannot be equal to 'none':", element);
                     }
 
+                    //batches are sent with normal priority
+                    if(annotation.batched() && annotation.priority() != PacketPriority.normal){
+                        Utils.messager.printMessage(Kind.ERROR, "A batched @Remote method must have normal priority:", element);
+                    }
+
                     //get and create class entry if needed
                     if(!classMap.containsKey(callLocation)){
                         ClassEntry clas = new ClassEntry(callLocation);
@@ -110,7 +116,7 @@ public class RemoteMethodAnnotationProcessor extends AbstractProcessor{
 
                     //create and add entry
                     MethodEntry method = new MethodEntry(entry.name, Utils.getMethodName(element), annotation.targets(), annotation.variants(),
-                    annotation.called(), annotation.unreliable(), annotation.forward(), lastMethodID++, (ExecutableElement)element, annotation.priority());
+                    annotation.called(), annotation.unreliable(), annotation.batched(), annotation.forward(), lastMethodID++, (ExecutableElement)element, annotation.priority());
 
                     entry.methods.add(method);
                     methods.add(method);
@@ -192,16 +192,19 @@ public class RemoteWriteGenerator{
 
         String sendString;
 
+        //batched methods are queued, and sent with other invocations at the end of the update
+        String send = methodEntry.batched ? "sendBatched" : "send";
+
         if(forwarded){ //forward packet
             if(!methodEntry.local.isClient){ //if the client doesn't get it called locally, forward it back after validation
-                sendString = "io.anuke.mindustry.Vars.net.send(";
+                sendString = "io.anuke.mindustry.Vars.net." + send + "(";
             }else{
-                sendString = "io.anuke.mindustry.Vars.net.sendExcept(exceptConnection, ";
+                sendString = "io.anuke.mindustry.Vars.net." + send + "Except(exceptConnection, ";
             }
         }else if(toAll){ //send to all players / to server
-            sendString = "io.anuke.mindustry.Vars.net.send(";
+            sendString = "io.anuke.mindustry.Vars.net." + send + "(";
         }else{ //send to specific client from server
-            sendString = "playerConnection.send(";
+            sendString = "playerConnection." + send + "(";
         }
 
         //send the actual packet
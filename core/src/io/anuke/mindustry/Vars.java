@@ -172,6 +172,7 @@ public class Vars implements Loadable{
     public static Entities entities;
     public static EntityGroup<Player> playerGroup;
     public static EntityGroup<TileEntity> tileGroup;
+    public static TileUpdateScheduler tileUpdates;
     public static EntityGroup<Bullet> bulletGroup;
     public static EntityGroup<EffectEntity> effectGroup;
     public static EntityGroup<DrawTrait> groundEffectGroup;
@@ -224,18 +225,19 @@ public class Vars implements Loadable{
         pathfinder = new Pathfinder();
 
         entities = new Entities();
+        tileUpdates = new TileUpdateScheduler();
         playerGroup = entities.add(Player.class).enableMapping();
-        tileGroup = entities.add(TileEntity.class, false);
-        bulletGroup = entities.add(Bullet.class).enableMapping();
+        tileGroup = entities.add(TileEntity.class, false).setUpdater(tileUpdates::update);
+        bulletGroup = entities.add(Bullet.class).enableMapping().enableParallel();
         effectGroup = entities.add(EffectEntity.class, false);
         groundEffectGroup = entities.add(DrawTrait.class, false);
         puddleGroup = entities.add(Puddle.class).enableMapping();
-        shieldGroup = entities.add(ShieldEntity.class, false);
+        shieldGroup = entities.add(ShieldEntity.class, false).enableParallel();
         fireGroup = entities.add(Fire.class).enableMapping();
         unitGroups = new EntityGroup[Team.all.length];
 
         for(Team team : Team.all){
-            unitGroups[team.ordinal()] = entities.add(BaseUnit.class).enableMapping();
+            unitGroups[team.ordinal()] = entities.add(BaseUnit.class).enableMapping().enableSyncCulling();
         }
 
         for(EntityGroup<?> group : entities.all()){
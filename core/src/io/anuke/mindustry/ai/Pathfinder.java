@@ -4,6 +4,7 @@ import io.anuke.annotations.Annotations.*;
 import io.anuke.arc.*;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.func.*;
+import io.anuke.arc.math.*;
 import io.anuke.arc.math.geom.*;
 import io.anuke.arc.util.*;
 import io.anuke.arc.util.ArcAnnotate.*;
@@ -14,6 +15,9 @@ import io.anuke.mindustry.gen.*;
 import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.meta.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 import static io.anuke.mindustry.Vars.*;
 
 public class Pathfinder implements Runnable{
@@ -21,9 +25,21 @@ public class Pathfinder implements Runnable{
     private static final int updateFPS = 60;
     private static final int updateInterval = 1000 / updateFPS;
     private static final int impassable = -1;
+    /** Size of a cluster in hierarchical mode, in tiles. Matches the quadrants of the block indexer. */
+    private static final int clusterSize = 16;
+    /** Size of the flow field of a cluster, which covers the cluster and a one-tile border. */
+    private static final int fieldSize = clusterSize + 2;
+    /** Maximum amount of portals of a cluster; each side has at most one entrance for every two tiles. */
+    private static final int maxPortals = clusterSize * 2;
+    /** Time after which the flow field of a cluster that no unit is in gets discarded, in milliseconds. */
+    private static final long clusterTimeout = 10000;
+    /** Maximum time a flow field that is being recalculated goes without publishing its progress, in milliseconds. */
+    private static final long maxPublishDelay = 500;
 
-    /** tile data, see PathTileStruct */
-    private int[][] tiles;
+    /** tile data, see PathTileStruct; indexed by x + y * width */
+    private int[] tiles = {};
+    /** dimensions of the tile data */
+    private int width, height;
     /** unordered array of path data for iteration only. DO NOT iterate ot access this in the main thread.*/
     private Array<PathData> list = new Array<>();
     /** Maps teams + flags to a valid path to get to that flag for that team. */
@@ -35,23 +51,33 @@ public class Pathfinder implements Runnable{
     /** current pathfinding thread */
     private @Nullable
     Thread thread;
+    /** worker pool that updates independent flow fields in parallel; null when all updates happen on the pathfinding thread. */
+    private @Nullable ExecutorService workers;
+    /** amount of threads used to update flow fields. */
+    private int threads = 1;
+    /** whether to use hierarchical paths on the next world load. */
+    private boolean hierarchical;
+    /** whether the paths of the current world are hierarchical. */
+    private boolean clustered;
 
     public Pathfinder(){
         Events.on(WorldLoadEvent.class, event -> {
             stop();
 
             //reset and update internal tile array
-            tiles = new int[world.width()][world.height()];
+            width = world.width();
+            height = world.height();
+            tiles = new int[width * height];
             pathMap = new PathData[Team.all.length][PathTarget.all.length];
             created = new GridBits(Team.all.length, PathTarget.all.length);
             list = new Array<>();
 
-            for(int x = 0; x < world.width(); x++){
-                for(int y = 0; y < world.height(); y++){
-                    tiles[x][y] = packTile(world.rawTile(x, y));
-                }
+            for(int i = 0; i < tiles.length; i++){
+                tiles[i] = packTile(world.rawTile(i % width, i / width));
             }
 
+            clustered = hierarchical;
+
             //special preset which may help speed things up; this is optional
             preloadPath(waveTeam, PathTarget.enemyCores);
 
@@ -68,9 +94,51 @@ public class Pathfinder implements Runnable{
         return PathTile.get(tile.cost, tile.getTeamID(), (byte)0, !tile.solid() && tile.floor().drownTime <= 0f);
     }
 
+    /** @return the packed index of a tile position. */
+    private int index(int x, int y){
+        return x + y * width;
+    }
+
+    /** @return whether this position is inside the tile data. */
+    private boolean inBounds(int x, int y){
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Sets the amount of threads used to update flow fields. Values above 1 update the flow fields of different teams and targets in parallel.
+     * Takes effect the next time the pathfinding thread is started.
+     */
+    public void setThreads(int threads){
+        this.threads = Math.max(threads, 1);
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
+    /**
+     * Sets whether paths are hierarchical. Hierarchical paths divide the world into clusters, find paths between the portals on cluster borders first,
+     * and only build fine-grained flow fields for clusters that contain units, so that their cost scales with the populated area instead of the map area.
+     * Takes effect on the next world load.
+     */
+    public void setHierarchical(boolean hierarchical){
+        this.hierarchical = hierarchical;
+    }
+
+    public boolean isHierarchical(){
+        return hierarchical;
+    }
+
     /** Starts or restarts the pathfinding thread. */
     private void start(){
         stop();
+        if(threads > 1){
+            workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "Pathfinder Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         thread = Threads.daemon(this);
     }
 
@@ -80,23 +148,44 @@ public class Pathfinder implements Runnable{
             thread.interrupt();
             thread = null;
         }
+        if(workers != null){
+            workers.shutdownNow();
+            workers = null;
+        }
         queue.clear();
     }
 
     public int debugValue(Team team, int x, int y){
-        if(pathMap[team.ordinal()][PathTarget.enemyCores.ordinal()] == null) return 0;
-        return pathMap[team.ordinal()][PathTarget.enemyCores.ordinal()].weights[x][y];
+        PathData data = pathMap[team.ordinal()][PathTarget.enemyCores.ordinal()];
+        if(data == null) return 0;
+        if(data.clusters != null){
+            ClusterField field = data.clusters.fields[data.clusters.clusterOf(x, y)];
+            return field == null ? 0 : field.get(x, y);
+        }
+        int[] published = data.published;
+        return published == null ? 0 : published[index(x, y)];
     }
 
-    /** Update a tile in the internal pathfinding grid. Causes a complete pathfinding reclaculation. */
+    /** @return milliseconds since the flow field for this team and target was last published, or -1 if it has not been created yet. */
+    public long fieldAge(Team team, PathTarget target){
+        PathData data = pathMap[team.ordinal()][target.ordinal()];
+        return data == null ? -1 : Time.timeSinceMillis(data.publishTime);
+    }
+
+    /**
+     * Update a tile in the internal pathfinding grid.
+     * Causes a complete pathfinding recalculation only if the targets have changed; otherwise, the affected region is repaired locally.
+     */
     public void updateTile(Tile tile){
         if(net.client()) return;
 
         int x = tile.x, y = tile.y;
+        IntArray changed = new IntArray();
 
         tile.getLinkedTiles(t -> {
-            if(Structs.inBounds(t.x, t.y, tiles)){
-                tiles[t.x][t.y] = packTile(t);
+            if(inBounds(t.x, t.y)){
+                tiles[index(t.x, t.y)] = packTile(t);
+                changed.add(index(t.x, t.y));
             }
         });
 
@@ -114,7 +203,7 @@ public class Pathfinder implements Runnable{
 
         queue.post(() -> {
             for(PathData data : list){
-                updateTargets(data, x, y);
+                updateTargets(data, x, y, changed);
             }
         });
     }
@@ -122,15 +211,46 @@ public class Pathfinder implements Runnable{
     /** Thread implementation. */
     @Override
     public void run(){
+        ExecutorService workers = this.workers;
+        //pending flow field updates submitted to the workers
+        Array<Future<?>> updates = new Array<>();
+
         while(true){
             if(net.client()) return;
             try{
 
                 queue.run();
 
-                //total update time no longer than maxUpdate
-                for(PathData data : list){
-                    updateFrontier(data, maxUpdate / list.size);
+                if(workers == null || list.size <= 1){
+                    //total update time no longer than maxUpdate
+                    for(PathData data : list){
+                        updateFrontier(data, maxUpdate / list.size);
+                    }
+                }else{
+                    //flow fields do not share any mutable state, so each one can be updated by a different worker.
+                    //waiting for all of them keeps the total update time no longer than maxUpdate
+                    long budget = maxUpdate * Math.min(threads, list.size) / list.size;
+
+                    for(PathData data : list){
+                        data.budget = budget;
+                        updates.add(workers.submit(data.updater));
+                    }
+
+                    ExecutionException failure = null;
+                    try{
+                        for(Future<?> update : updates){
+                            try{
+                                update.get();
+                            }catch(ExecutionException e){
+                                //keep waiting for the others, so no path is still being updated when the next round is submitted
+                                if(failure == null) failure = e;
+                            }
+                        }
+                    }finally{
+                        updates.clear();
+                    }
+
+                    if(failure != null) throw failure;
                 }
 
                 try{
@@ -139,6 +259,9 @@ public class Pathfinder implements Runnable{
                     //stop looping when interrupted externally
                     return;
                 }
+            }catch(InterruptedException | RejectedExecutionException e){
+                //the worker pool was shut down
+                return;
             }catch(Exception e){
                 e.printStackTrace();
             }
@@ -162,53 +285,86 @@ public class Pathfinder implements Runnable{
             return tile;
         }
 
-        int[][] values = data.weights;
-        int value = values[tile.x][tile.y];
+        if(data.clusters != null){
+            ClusterData clusters = data.clusters;
+            int cluster = clusters.clusterOf(tile.x, tile.y);
+            //keep the field of this cluster alive
+            clusters.access[cluster] = Time.millis();
+
+            ClusterField field = clusters.fields[cluster];
+            if(field == null) return tile;
+
+            return nextTile(tile, field.weights, field.x, field.y, field.width, field.height);
+        }
+
+        //read the published field once; the pathfinding thread never writes to an array after publishing it
+        int[] weights = data.published;
+        if(weights == null) return tile;
+
+        return nextTile(tile, weights, 0, 0, width, height);
+    }
+
+    /** @return the neighbor of a tile with the lowest weight, in a flow field that covers the specified rectangle. Main thread only. */
+    private Tile nextTile(Tile tile, int[] values, int fx, int fy, int fwidth, int fheight){
+        int value = values[(tile.x - fx) + (tile.y - fy) * fwidth];
 
         Tile current = null;
         int tl = 0;
         for(Point2 point : Geometry.d8){
             int dx = tile.x + point.x, dy = tile.y + point.y;
+            if(dx < fx || dy < fy || dx >= fx + fwidth || dy >= fy + fheight) continue;
 
             Tile other = world.tile(dx, dy);
             if(other == null) continue;
 
-            if(values[dx][dy] < value && (current == null || values[dx][dy] < tl) && !other.solid() && other.floor().drownTime <= 0 &&
+            int otherValue = values[(dx - fx) + (dy - fy) * fwidth];
+
+            if(otherValue != impassable && otherValue < value && (current == null || otherValue < tl) && !other.solid() && other.floor().drownTime <= 0 &&
             !(point.x != 0 && point.y != 0 && (world.solid(tile.x + point.x, tile.y) || world.solid(tile.x, tile.y + point.y)))){ //diagonal corner trap
                 current = other;
-                tl = values[dx][dy];
+                tl = otherValue;
             }
         }
 
-        if(current == null || tl == impassable) return tile;
+        if(current == null) return tile;
 
         return current;
     }
 
     /** @return whether a tile can be passed through by this team. Pathfinding thread only.*/
-    private boolean passable(int x, int y, Team team){
-        int tile = tiles[x][y];
+    private boolean passable(int index, Team team){
+        int tile = tiles[index];
         return PathTile.passable(tile) || (PathTile.team(tile) != team.ordinal() && PathTile.team(tile) != Team.derelict.ordinal());
     }
 
     /**
-     * Clears the frontier, increments the search and sets up all flow sources.
+     * Updates a path after the tiles at the specified positions have changed.
+     * If a target was added or removed, this clears the frontier, increments the search and sets up all flow sources.
+     * Otherwise, only the region of the flow field that depended on the changed tiles is recalculated.
      * This only occurs for active teams.
      */
-    private void updateTargets(PathData path, int x, int y){
-        if(!Structs.inBounds(x, y, path.weights)) return;
-
-        if(path.weights[x][y] == 0){
-            //this was a previous target
-            path.frontier.clear();
-        }else if(!path.frontier.isEmpty()){
-            //skip if this path is processing
+    private void updateTargets(PathData path, int x, int y, IntArray changed){
+        if(!inBounds(x, y)) return;
+
+        if(path.clusters != null){
+            path.clusters.invalidate(changed);
+            return;
+        }
+
+        int index = index(x, y);
+        boolean targetChanged = path.weights[index] == 0;
+        synchronized(path.targets){
+            targetChanged |= path.targets.contains(Pos.get(x, y));
+        }
+
+        if(!targetChanged){
+            repairTiles(path, changed);
             return;
         }
 
         //assign impassability to the tile
-        if(!passable(x, y, path.team)){
-            path.weights[x][y] = impassable;
+        if(!passable(index, path.team)){
+            path.weights[index] = impassable;
         }
 
         //increment search, clear frontier
@@ -219,11 +375,87 @@ public class Pathfinder implements Runnable{
             //add targets
             for(int i = 0; i < path.targets.size; i++){
                 int pos = path.targets.get(i);
-                int tx = Pos.x(pos), ty = Pos.y(pos);
+                int target = index(Pos.x(pos), Pos.y(pos));
 
-                path.weights[tx][ty] = 0;
-                path.searches[tx][ty] = (short)path.search;
-                path.frontier.addFirst(pos);
+                path.weights[target] = 0;
+                path.searches[target] = (short)path.search;
+                path.frontier.addFirst(target);
+            }
+        }
+    }
+
+    /**
+     * Locally repairs a flow field around changed tiles, LPA*-style.
+     * Every tile whose cost may have been derived from a changed tile is invalidated by resetting its search ID,
+     * then the still-valid tiles bordering the invalidated region are added to the frontier so that only that region is re-flooded.
+     * Invalidated tiles keep their old weights until they are reached again.
+     * Pathfinding thread only.
+     */
+    private void repairTiles(PathData path, IntArray changed){
+        IntQueue repair = path.repair;
+        IntArray invalid = path.invalid;
+        int[] weights = path.weights;
+        short[] searches = path.searches;
+        repair.clear();
+        invalid.clear();
+
+        for(int i = 0; i < changed.size; i++){
+            int index = changed.get(i);
+
+            //tiles that were part of the current search may have other tiles depending on them
+            if(searches[index] == path.search){
+                repair.addFirst(index);
+            }
+
+            searches[index] = 0;
+            invalid.add(index);
+        }
+
+        //invalidate all tiles that were reached through a changed tile
+        while(!repair.isEmpty()){
+            int index = repair.removeLast();
+            int x = index % width, y = index / width;
+            int cost = weights[index];
+
+            if(cost == impassable) continue;
+
+            for(Point2 point : Geometry.d4){
+                int dx = x + point.x, dy = y + point.y;
+                if(!inBounds(dx, dy)) continue;
+
+                int other = index(dx, dy);
+                if(searches[other] != path.search) continue;
+
+                int otherCost = weights[other];
+                if(otherCost != 0 && otherCost != impassable && otherCost == cost + PathTile.cost(tiles[other])){
+                    searches[other] = 0;
+                    repair.addFirst(other);
+                    invalid.add(other);
+                }
+            }
+        }
+
+        //assign impassability to the changed tiles now that their old costs are no longer needed
+        for(int i = 0; i < changed.size; i++){
+            int index = changed.get(i);
+            if(!passable(index, path.team)){
+                weights[index] = impassable;
+            }
+        }
+
+        //flood the invalidated region again from its valid border
+        for(int i = 0; i < invalid.size; i++){
+            int index = invalid.get(i);
+            int x = index % width, y = index / width;
+
+            for(Point2 point : Geometry.d4){
+                int dx = x + point.x, dy = y + point.y;
+                if(!inBounds(dx, dy)) continue;
+
+                int other = index(dx, dy);
+                if(searches[other] == path.search && weights[other] != impassable){
+                    path.frontier.addFirst(other);
+                }
             }
         }
     }
@@ -235,10 +467,7 @@ public class Pathfinder implements Runnable{
     /** Created a new flowfield that aims to get to a certain target for a certain team.
      * Pathfinding thread only. */
     private PathData createPath(Team team, PathTarget target, IntArray targets){
-        PathData path = new PathData(team, target, world.width(), world.height());
-
-        list.add(path);
-        pathMap[team.ordinal()][target.ordinal()] = path;
+        PathData path = new PathData(team, target, width, height, clustered);
 
         //grab targets from passed array
         synchronized(path.targets){
@@ -246,53 +475,321 @@ public class Pathfinder implements Runnable{
             path.targets.addAll(targets);
         }
 
-        //fill with impassables by default
-        for(int x = 0; x < world.width(); x++){
-            for(int y = 0; y < world.height(); y++){
-                path.weights[x][y] = impassable;
-            }
+        if(path.clusters != null){
+            list.add(path);
+            pathMap[team.ordinal()][target.ordinal()] = path;
+            return path;
         }
 
+        //fill with impassables by default
+        Arrays.fill(path.weights, impassable);
+
         //add targets
         for(int i = 0; i < path.targets.size; i++){
             int pos = path.targets.get(i);
-            path.weights[Pos.x(pos)][Pos.y(pos)] = 0;
-            path.frontier.addFirst(pos);
+            int index = index(Pos.x(pos), Pos.y(pos));
+            path.weights[index] = 0;
+            path.frontier.addFirst(index);
         }
 
+        //only make the path visible to the main thread once it is fully initialized
+        list.add(path);
+        pathMap[team.ordinal()][target.ordinal()] = path;
+
         return path;
     }
 
-    /** Update the frontier for a path. Pathfinding thread only. */
+    /**
+     * Update the frontier for a path. Only accesses the packed tile data, never Tile objects.
+     * Pathfinding thread or the worker currently assigned to this path only.
+     */
     private void updateFrontier(PathData path, long nsToRun){
+        if(path.clusters != null){
+            updateClusters(path, nsToRun);
+            return;
+        }
+
+        if(path.frontier.isEmpty()) return;
+
         long start = Time.nanos();
+        if(path.changeTime == 0) path.changeTime = Time.millis();
+        int[] weights = path.weights;
+        short[] searches = path.searches;
+        short search = (short)path.search;
 
         while(path.frontier.size > 0 && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun)){
-            Tile tile = world.tile(path.frontier.removeLast());
-            if(tile == null || path.weights == null) return; //something went horribly wrong, bail
-            int cost = path.weights[tile.x][tile.y];
+            int index = path.frontier.removeLast();
+            if(index < 0 || index >= tiles.length) return; //something went horribly wrong, bail
+            int cost = weights[index];
 
             //pathfinding overflowed for some reason, time to bail. the next block update will handle this, hopefully
-            if(path.frontier.size >= world.width() * world.height()){
+            if(path.frontier.size >= tiles.length){
                 path.frontier.clear();
                 return;
             }
 
             if(cost != impassable){
+                int x = index % width, y = index / width;
+
                 for(Point2 point : Geometry.d4){
+                    int dx = x + point.x, dy = y + point.y;
+                    if(!inBounds(dx, dy)) continue;
 
-                    int dx = tile.x + point.x, dy = tile.y + point.y;
-                    Tile other = world.tile(dx, dy);
+                    int other = index(dx, dy);
+                    int otherCost = PathTile.cost(tiles[other]);
 
-                    if(other != null && (path.weights[dx][dy] > cost + other.cost || path.searches[dx][dy] < path.search) && passable(dx, dy, path.team)){
-                        if(other.cost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + other);
-                        path.frontier.addFirst(Pos.get(dx, dy));
-                        path.weights[dx][dy] = cost + other.cost;
-                        path.searches[dx][dy] = (short)path.search;
+                    if((weights[other] > cost + otherCost || searches[other] < search) && passable(other, path.team)){
+                        if(otherCost < 0) throw new IllegalArgumentException("Tile cost cannot be negative! " + world.tile(dx, dy));
+                        path.frontier.addFirst(other);
+                        weights[other] = cost + otherCost;
+                        searches[other] = search;
                     }
                 }
             }
         }
+
+        //make the field visible to units once it has converged; fields that take long to converge publish their progress periodically,
+        //except for the first build, as units would stop moving in the parts that were not reached yet
+        if(path.frontier.isEmpty() || (path.published != null && Time.timeSinceMillis(path.changeTime) >= maxPublishDelay)){
+            path.publish();
+        }
+    }
+
+    /**
+     * Updates a hierarchical path: recalculates the portals of changed clusters and the distances between portals if tiles have changed,
+     * then builds flow fields for clusters that units are in and discards the ones that are no longer used.
+     * Pathfinding thread or the worker currently assigned to this path only.
+     */
+    private void updateClusters(PathData path, long nsToRun){
+        long start = Time.nanos();
+        ClusterData data = path.clusters;
+
+        if(data.dirty){
+            for(int i = 0; i < data.dirtyClusters.length; i++){
+                if(data.dirtyClusters[i]){
+                    updateCluster(path, i);
+                    data.dirtyClusters[i] = false;
+
+                    //continue with the remaining clusters on the next update; the previous fields stay in use until then
+                    if(nsToRun >= 0 && Time.timeSinceNanos(start) > nsToRun) return;
+                }
+            }
+            data.dirty = false;
+            updateDistances(path);
+        }
+
+        long time = Time.millis();
+
+        for(int i = 0; i < data.fields.length; i++){
+            ClusterField field = data.fields[i];
+            boolean used = time - data.access[i] <= clusterTimeout;
+
+            if(used && (field == null || field.version != data.version) && (nsToRun < 0 || Time.timeSinceNanos(start) <= nsToRun)){
+                data.fields[i] = buildField(path, i);
+            }else if(!used && field != null){
+                data.fields[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Recalculates the portals of a cluster, and the costs between its portals and from its targets to its portals.
+     * An entrance is a run of tiles that are passable on both sides of a cluster border; its portal is placed in the middle of the run,
+     * so the clusters on both sides of the border place their portals on the same pair of tiles.
+     */
+    private void updateCluster(PathData path, int cluster){
+        ClusterData data = path.clusters;
+        IntArray portals = data.portals[cluster], outer = data.portalOuter[cluster];
+        int x0 = data.fieldX(cluster) + 1, y0 = data.fieldY(cluster) + 1;
+        int x1 = Math.min(x0 + clusterSize, width), y1 = Math.min(y0 + clusterSize, height);
+
+        portals.clear();
+        outer.clear();
+
+        for(int d = 0; d < 4; d++){
+            Point2 point = Geometry.d4(d);
+            int length = point.x != 0 ? y1 - y0 : x1 - x0;
+            int run = 0;
+
+            //one extra step closes a run that reaches the corner
+            for(int i = 0; i <= length; i++){
+                int x = side(point.x, x0, x1, i), y = side(point.y, y0, y1, i);
+
+                if(i < length && inBounds(x + point.x, y + point.y) && passable(index(x, y), path.team) && passable(index(x + point.x, y + point.y), path.team)){
+                    run++;
+                }else if(run > 0){
+                    int middle = i - run + (run - 1) / 2;
+                    int px = side(point.x, x0, x1, middle), py = side(point.y, y0, y1, middle);
+                    portals.add(index(px, py));
+                    outer.add(index(px + point.x, py + point.y));
+                    run = 0;
+                }
+            }
+        }
+
+        int amount = portals.size;
+        int[] intra = new int[amount * amount], targets = new int[amount];
+        int[] weights = data.scratch;
+
+        for(int i = 0; i < amount; i++){
+            Arrays.fill(weights, impassable);
+            data.frontier.clear();
+            int local = data.local(cluster, portals.get(i));
+            weights[local] = 0;
+            data.frontier.addFirst(local);
+            flood(path, cluster, weights);
+
+            for(int j = 0; j < amount; j++){
+                intra[i * amount + j] = weights[data.local(cluster, portals.get(j))];
+            }
+        }
+
+        Arrays.fill(weights, impassable);
+        data.frontier.clear();
+        seedTargets(path, cluster, weights);
+        flood(path, cluster, weights);
+
+        for(int i = 0; i < amount; i++){
+            targets[i] = weights[data.local(cluster, portals.get(i))];
+        }
+
+        data.intraCosts[cluster] = intra;
+        data.targetCosts[cluster] = targets;
+    }
+
+    /** @return the coordinate of the i-th tile on the side of a cluster facing a direction, on the axis of that direction component. */
+    private static int side(int direction, int min, int max, int i){
+        return direction > 0 ? max - 1 : direction < 0 ? min : min + i;
+    }
+
+    /**
+     * Recalculates the cost of getting from each portal to the nearest target, on the graph of portals.
+     * Portals are linked to the other portals of their cluster by the costs between them, and to the portal on the other side of their entrance.
+     */
+    private void updateDistances(PathData path){
+        ClusterData data = path.clusters;
+        IntQueue frontier = data.frontier;
+
+        Arrays.fill(data.distances, impassable);
+        frontier.clear();
+
+        for(int cluster = 0; cluster < data.portals.length; cluster++){
+            IntArray outer = data.portalOuter[cluster];
+            int[] targets = data.targetCosts[cluster];
+
+            for(int i = 0; i < outer.size; i++){
+                int node = cluster * maxPortals + i;
+                data.partners[node] = data.portalAt(outer.get(i));
+                if(targets[i] != impassable){
+                    data.relax(node, targets[i]);
+                }
+            }
+        }
+
+        while(!frontier.isEmpty()){
+            int node = frontier.removeLast();
+            int cluster = node / maxPortals, portal = node % maxPortals;
+            int cost = data.distances[node];
+            int amount = data.portals[cluster].size;
+            int[] intra = data.intraCosts[cluster];
+
+            for(int i = 0; i < amount; i++){
+                int edge = intra[portal * amount + i];
+                if(edge != impassable){
+                    data.relax(cluster * maxPortals + i, cost + edge);
+                }
+            }
+
+            int partner = data.partners[node];
+            if(partner != -1){
+                data.relax(partner, cost + PathTile.cost(tiles[data.portals[partner / maxPortals].get(partner % maxPortals)]));
+            }
+        }
+
+        data.version++;
+        path.publishTime = Time.millis();
+    }
+
+    /**
+     * Builds the fine flow field of a cluster. Targets inside the cluster have a weight of 0, and the tile across each entrance
+     * starts with the distance of the portal on the other side, so units walk to the portal on the shortest path and continue in the next cluster.
+     */
+    private ClusterField buildField(PathData path, int cluster){
+        ClusterData data = path.clusters;
+        IntArray outer = data.portalOuter[cluster];
+
+        int[] weights = new int[fieldSize * fieldSize];
+        Arrays.fill(weights, impassable);
+        data.frontier.clear();
+
+        seedTargets(path, cluster, weights);
+
+        for(int i = 0; i < outer.size; i++){
+            int partner = data.partners[cluster * maxPortals + i];
+            int distance = partner == -1 ? impassable : data.distances[partner];
+            if(distance == impassable) continue;
+
+            int local = data.local(cluster, outer.get(i));
+            if(weights[local] == impassable || weights[local] > distance){
+                weights[local] = distance;
+                data.frontier.addFirst(local);
+            }
+
+            //keep units close to the clusters they are led to
+            if(distance < data.distances[cluster * maxPortals + i]){
+                int other = partner / maxPortals;
+                data.access[other] = Math.max(data.access[other], data.access[cluster]);
+            }
+        }
+
+        flood(path, cluster, weights);
+
+        return new ClusterField(data.fieldX(cluster), data.fieldY(cluster), fieldSize, fieldSize, weights, data.version);
+    }
+
+    /** Adds the targets inside a cluster to the frontier, with a weight of 0. */
+    private void seedTargets(PathData path, int cluster, int[] weights){
+        ClusterData data = path.clusters;
+
+        synchronized(path.targets){
+            for(int i = 0; i < path.targets.size; i++){
+                int pos = path.targets.get(i);
+                int tx = Pos.x(pos), ty = Pos.y(pos);
+                if(inBounds(tx, ty) && data.clusterOf(tx, ty) == cluster){
+                    int local = data.local(cluster, index(tx, ty));
+                    weights[local] = 0;
+                    data.frontier.addFirst(local);
+                }
+            }
+        }
+    }
+
+    /** Floods the field of a cluster from the tiles in the frontier. Only tiles inside the cluster are expanded into; the border is never entered. */
+    private void flood(PathData path, int cluster, int[] weights){
+        ClusterData data = path.clusters;
+        IntQueue frontier = data.frontier;
+        int fx = data.fieldX(cluster), fy = data.fieldY(cluster);
+        int x1 = Math.min(fx + 1 + clusterSize, width), y1 = Math.min(fy + 1 + clusterSize, height);
+
+        while(!frontier.isEmpty()){
+            int local = frontier.removeLast();
+            int x = fx + local % fieldSize, y = fy + local / fieldSize;
+            int cost = weights[local];
+
+            for(Point2 point : Geometry.d4){
+                int dx = x + point.x, dy = y + point.y;
+                if(dx <= fx || dy <= fy || dx >= x1 || dy >= y1) continue;
+
+                int index = index(dx, dy);
+                int other = (dx - fx) + (dy - fy) * fieldSize;
+                int otherCost = PathTile.cost(tiles[index]);
+
+                if((weights[other] == impassable || weights[other] > cost + otherCost) && passable(index, path.team)){
+                    weights[other] = cost + otherCost;
+                    frontier.addFirst(other);
+                }
+            }
+        }
     }
 
     /** A path target defines a set of targets for a path.*/
@@ -336,25 +833,192 @@ public class Pathfinder implements Runnable{
         final Team team;
         /** Flag that is being targeted. */
         final PathTarget target;
-        /** costs of getting to a specific tile */
-        final int[][] weights;
+        /** hierarchical path data; if this is not null, the weights, searches and frontier are not used */
+        final @Nullable ClusterData clusters;
+        /** costs of getting to a specific tile, indexed like the tile data. This is the back buffer, only accessed by the pathfinding thread. */
+        int[] weights;
+        /** the last published copy of the weights, read by the main thread; null until the first build has converged. Never written to once published. */
+        volatile @Nullable int[] published;
+        /** time at which the current weights were published, in milliseconds */
+        volatile long publishTime = Time.millis();
+        /** time at which the back buffer was first updated after the last publication, in milliseconds; 0 if it has not been updated since */
+        long changeTime;
         /** search IDs of each position - the highest, most recent search is prioritized and overwritten */
-        final short[][] searches;
-        /** search frontier, these are Pos objects */
+        final short[] searches;
+        /** search frontier, these are packed tile indices */
         final IntQueue frontier = new IntQueue();
+        /** queue of tiles whose dependents are being invalidated during a local repair */
+        final IntQueue repair = new IntQueue();
+        /** tiles invalidated during the last local repair */
+        final IntArray invalid = new IntArray();
         /** all target positions; these positions have a cost of 0, and must be synchronized on! */
         final IntArray targets = new IntArray();
         /** current search ID */
         int search = 1;
+        /** time budget of the next parallel update, in nanoseconds */
+        long budget;
+        /** updates this path's frontier on a worker thread */
+        final Runnable updater = () -> updateFrontier(this, budget);
 
-        PathData(Team team, PathTarget target, int width, int height){
+        PathData(Team team, PathTarget target, int width, int height, boolean clustered){
             this.team = team;
             this.target = target;
 
-            this.weights = new int[width][height];
-            this.searches = new short[width][height];
+            if(clustered){
+                this.clusters = new ClusterData(width, height);
+                this.searches = null;
+                return;
+            }
+
+            this.clusters = null;
+            this.weights = new int[width * height];
+            this.searches = new short[width * height];
             this.frontier.ensureCapacity((width + height) * 3);
         }
+
+        /**
+         * Makes the current weights visible to readers, and continues on a copy of them.
+         * Readers may hold a published field for as long as they like, so it is never reused as the back buffer.
+         */
+        void publish(){
+            published = weights;
+            publishTime = Time.millis();
+            changeTime = 0;
+            weights = Arrays.copyOf(weights, weights.length);
+        }
+    }
+
+    /**
+     * Cluster-level data of a hierarchical path. The borders of clusters are crossed at portals, which form a graph that is searched
+     * instead of the tiles; only the fields of populated clusters are built. Portals are identified by cluster * maxPortals + their index in the cluster.
+     */
+    class ClusterData{
+        /** amount of clusters on each axis */
+        final int clustersX, clustersY;
+        /** tile index of each portal of each cluster */
+        final IntArray[] portals;
+        /** tile index of the tile across the entrance of each portal of each cluster */
+        final IntArray[] portalOuter;
+        /** costs of getting from each portal of a cluster to each other portal of it, indexed by cluster, then by from * portals + to */
+        final int[][] intraCosts;
+        /** costs of getting from the targets in a cluster to each of its portals, indexed by cluster */
+        final int[][] targetCosts;
+        /** the portal on the other side of the entrance of each portal, or -1 if there is none */
+        final int[] partners;
+        /** cost of getting from each portal to the nearest target */
+        final int[] distances;
+        /** clusters that need to be recalculated */
+        final boolean[] dirtyClusters;
+        /** last time a unit requested the field of each cluster, in milliseconds. Written by the main thread. */
+        final long[] access;
+        /** fine flow fields of each cluster; null if no unit has been in the cluster recently */
+        final ClusterField[] fields;
+        /** search frontier, used for both portal distances and fine fields */
+        final IntQueue frontier = new IntQueue();
+        /** weights used to find the costs between portals */
+        final int[] scratch = new int[fieldSize * fieldSize];
+        /** whether any cluster needs to be recalculated */
+        boolean dirty = true;
+        /** incremented every time the portal distances change; fields of older versions get rebuilt */
+        int version;
+
+        ClusterData(int width, int height){
+            clustersX = Mathf.ceil(width / (float)clusterSize);
+            clustersY = Mathf.ceil(height / (float)clusterSize);
+
+            int size = clustersX * clustersY;
+            portals = new IntArray[size];
+            portalOuter = new IntArray[size];
+            intraCosts = new int[size][];
+            targetCosts = new int[size][];
+            partners = new int[size * maxPortals];
+            distances = new int[size * maxPortals];
+            dirtyClusters = new boolean[size];
+            access = new long[size];
+            fields = new ClusterField[size];
+
+            for(int i = 0; i < size; i++){
+                portals[i] = new IntArray();
+                portalOuter[i] = new IntArray();
+            }
+
+            Arrays.fill(dirtyClusters, true);
+        }
+
+        int clusterOf(int x, int y){
+            return x / clusterSize + (y / clusterSize) * clustersX;
+        }
+
+        /** @return the bottom left corner of the field of a cluster, which is one tile outside of the cluster. */
+        int fieldX(int cluster){
+            return (cluster % clustersX) * clusterSize - 1;
+        }
+
+        int fieldY(int cluster){
+            return (cluster / clustersX) * clusterSize - 1;
+        }
+
+        /** @return the index of a tile in the field of a cluster. */
+        int local(int cluster, int index){
+            return (index % width - fieldX(cluster)) + (index / width - fieldY(cluster)) * fieldSize;
+        }
+
+        /** @return the portal on a tile, or -1 if there is none. */
+        int portalAt(int index){
+            int cluster = clusterOf(index % width, index / width);
+            int portal = portals[cluster].indexOf(index);
+            return portal == -1 ? -1 : cluster * maxPortals + portal;
+        }
+
+        /** Lowers the distance of a portal and adds it to the frontier, if the cost is lower than its current distance. */
+        void relax(int node, int cost){
+            if(distances[node] == impassable || distances[node] > cost){
+                distances[node] = cost;
+                frontier.addFirst(node);
+            }
+        }
+
+        /** Marks the clusters of changed tiles and their neighbors as dirty. */
+        void invalidate(IntArray changed){
+            for(int i = 0; i < changed.size; i++){
+                int index = changed.get(i);
+                int cx = (index % width) / clusterSize, cy = (index / width) / clusterSize;
+
+                dirtyClusters[cx + cy * clustersX] = true;
+                for(Point2 point : Geometry.d4){
+                    int x = cx + point.x, y = cy + point.y;
+                    if(x >= 0 && y >= 0 && x < clustersX && y < clustersY){
+                        dirtyClusters[x + y * clustersX] = true;
+                    }
+                }
+            }
+            dirty = true;
+        }
+    }
+
+    /** Fine flow field of a single cluster and a one-tile border around it. Immutable once built. */
+    static class ClusterField{
+        /** bottom left corner and size of the covered area, in tiles */
+        final int x, y, width, height;
+        /** costs of getting to a specific tile, indexed relative to the covered area */
+        final int[] weights;
+        /** version of the portal distances this was built with */
+        final int version;
+
+        ClusterField(int x, int y, int width, int height, int[] weights, int version){
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.weights = weights;
+            this.version = version;
+        }
+
+        int get(int tx, int ty){
+            tx -= x;
+            ty -= y;
+            return tx < 0 || ty < 0 || tx >= width || ty >= height ? impassable : weights[tx + ty * width];
+        }
     }
 
     /** Holds a copy of tile data for a specific tile position. */
@@ -2,7 +2,9 @@ package io.anuke.mindustry.core;
 
 import io.anuke.annotations.Annotations.*;
 import io.anuke.arc.*;
+import io.anuke.arc.collection.Array;
 import io.anuke.arc.util.*;
+import io.anuke.arc.util.ArcAnnotate.*;
 import io.anuke.mindustry.content.*;
 import io.anuke.mindustry.core.GameState.*;
 import io.anuke.mindustry.ctype.*;
@@ -31,6 +33,13 @@ import static io.anuke.mindustry.Vars.*;
  * This class should <i>not</i> call any outside methods to change state of modules, but instead fire events.
  */
 public class Logic implements ApplicationListener{
+    /** Groups that bullets collide with. Reused every frame. */
+    private final Array<EntityGroup<?>> hittableGroups = new Array<>();
+    /** Updates entity groups on multiple threads; null if entities are updated on the main thread only. */
+    private @Nullable ParallelUpdater updater;
+    /** Groups updated by the parallel updater, in update order. */
+    private EntityGroup<?>[] updateGroups;
+    private int updateThreads = 1;
 
     public Logic(){
         Events.on(WaveEvent.class, event -> {
@@ -100,6 +109,34 @@ public class Logic implements ApplicationListener{
         }
     }
 
+    /**
+     * Sets the amount of threads used to update entities.
+     * Values above 1 update the entities of parallel groups on a worker pool; see {@link ParallelUpdater}.
+     */
+    public void setUpdateThreads(int threads){
+        if(updater != null){
+            updater.dispose();
+            updater = null;
+        }
+
+        updateThreads = Math.max(threads, 1);
+
+        if(updateThreads > 1){
+            updater = new ParallelUpdater(updateThreads);
+            updateGroups = new EntityGroup[unitGroups.length + 5];
+            System.arraycopy(unitGroups, 0, updateGroups, 0, unitGroups.length);
+            updateGroups[unitGroups.length] = puddleGroup;
+            updateGroups[unitGroups.length + 1] = shieldGroup;
+            updateGroups[unitGroups.length + 2] = bulletGroup;
+            updateGroups[unitGroups.length + 3] = tileGroup;
+            updateGroups[unitGroups.length + 4] = fireGroup;
+        }
+    }
+
+    public int getUpdateThreads(){
+        return updateThreads;
+    }
+
     public void play(){
         state.set(State.playing);
         state.wavetime = state.rules.waveSpacing * 2; //grace period of 2x wave time before game starts
@@ -128,6 +165,7 @@ public class Logic implements ApplicationListener{
         state.stats = new Stats();
 
         entities.clear();
+        tileUpdates.clear();
         Time.clear();
         TileEntity.sleepingEntities = 0;
 
@@ -232,15 +270,19 @@ public class Logic implements ApplicationListener{
                 }
 
                 if(!state.isEditor()){
-                    for(EntityGroup group : unitGroups){
-                        group.update();
+                    if(updater != null){
+                        updater.update(updateGroups);
+                    }else{
+                        for(EntityGroup group : unitGroups){
+                            group.update();
+                        }
+
+                        puddleGroup.update();
+                        shieldGroup.update();
+                        bulletGroup.update();
+                        tileGroup.update();
+                        fireGroup.update();
                     }
-
-                    puddleGroup.update();
-                    shieldGroup.update();
-                    bulletGroup.update();
-                    tileGroup.update();
-                    fireGroup.update();
                 }else{
                     for(EntityGroup<?> group : unitGroups){
                         group.updateEvents();
@@ -257,13 +299,15 @@ public class Logic implements ApplicationListener{
                 }
 
                 if(!state.isEditor()){
+                    hittableGroups.clear();
 
-                    for(EntityGroup group : unitGroups){
+                    for(EntityGroup<?> group : unitGroups){
                         if(group.isEmpty()) continue;
-                        collisions.collideGroups(bulletGroup, group);
+                        hittableGroups.add(group);
                     }
 
-                    collisions.collideGroups(bulletGroup, playerGroup);
+                    hittableGroups.add(playerGroup);
+                    collisions.collideBullets(bulletGroup, hittableGroups);
                 }
             }
 
@@ -28,7 +28,7 @@ import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.modules.*;
 
 import java.io.*;
-import java.util.zip.*;
+import java.nio.*;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -55,6 +55,17 @@ public class NetClient implements ApplicationListener{
     /** Byte stream for reading in snapshots. */
     private ReusableByteInStream byteStream = new ReusableByteInStream();
     private DataInputStream dataStream = new DataInputStream(byteStream);
+    /** Stream for reading in single entity states. */
+    private ReusableByteInStream stateStream = new ReusableByteInStream();
+    private DataInputStream stateInput = new DataInputStream(stateStream);
+    /** Entity states of recently received snapshots, used to decode deltas. */
+    private SnapshotHistory snapshots = new SnapshotHistory();
+    /** View of the baseline of the entity state that is being read. */
+    private SnapshotHistory.State baseState = new SnapshotHistory.State();
+    /** ID of the last entity snapshot that was received in full. */
+    private int lastSnapshot = -1;
+    /** Maps entities that left the area of interest to the snapshot they left in. They are not created from that or older snapshots. */
+    private IntIntMap leftEntities = new IntIntMap();
 
     public NetClient(){
 
@@ -121,7 +132,7 @@ public class NetClient implements ApplicationListener{
 
         net.handleClient(WorldStream.class, data -> {
             Log.info("Recieved world data: {0} bytes.", data.stream.available());
-            NetworkIO.loadWorld(new InflaterInputStream(data.stream));
+            NetworkIO.loadWorld(data.stream);
 
             finishConnecting();
         });
@@ -130,6 +141,16 @@ public class NetClient implements ApplicationListener{
             packet.writeBuffer.position(0);
             RemoteReadClient.readPacket(packet.writeBuffer, packet.type);
         });
+
+        net.handleClient(InvokeBatchPacket.class, packet -> {
+            ByteBuffer buffer = ByteBuffer.wrap(packet.data);
+            for(int i = 0; i < packet.amount; i++){
+                byte type = buffer.get();
+                int next = buffer.getShort() + buffer.position();
+                RemoteReadClient.readPacket(buffer, type);
+                buffer.position(next);
+            }
+        });
     }
 
     //called on all clients
@@ -291,17 +312,38 @@ public class NetClient implements ApplicationListener{
     }
 
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
-    public static void onEntitySnapshot(byte groupID, short amount, short dataLen, byte[] data){
+    public static void onEntitySnapshot(byte groupID, int snapshotID, int baseID, short amount, short dataLen, ByteBuffer data){
         try{
             netClient.byteStream.setBytes(net.decompressSnapshot(data, dataLen));
             DataInputStream input = netClient.dataStream;
 
             EntityGroup group = entities.get(groupID);
+            SnapshotHistory snapshots = netClient.snapshots;
+            //states of snapshots without history are not stored, and are read from the packet directly
+            boolean history = baseID != SnapshotHistory.noHistory;
+            boolean complete = true;
+
+            snapshots.begin(snapshotID);
 
             //go through each entity
             for(int j = 0; j < amount; j++){
                 int id = input.readInt();
                 byte typeID = input.readByte();
+                DataInput stateInput = input;
+
+                if(history){
+                    byte[] entityState = SnapshotHistory.read(input, snapshots.get(baseID, id, netClient.baseState));
+
+                    //the baseline of this delta is gone, skip the entity until a full state arrives
+                    if(entityState == null){
+                        complete = false;
+                        continue;
+                    }
+
+                    snapshots.put(snapshotID, id, entityState);
+                    netClient.stateStream.setBytes(entityState);
+                    stateInput = netClient.stateInput;
+                }
 
                 SyncTrait entity = group == null ? null : (SyncTrait)group.getByID(id);
                 boolean add = false, created = false;
@@ -311,6 +353,12 @@ public class NetClient implements ApplicationListener{
                     add = true;
                 }
 
+                //this state may have been sent before the entity left the area of interest, don't add it back
+                boolean left = entity == null && snapshotID <= netClient.leftEntities.get(id, -1);
+                if(left && history){
+                    continue;
+                }
+
                 //entity must not be added yet, so create it
                 if(entity == null){
                     entity = (SyncTrait)content.<TypeID>getByID(ContentType.typeid, typeID).constructor.get();
@@ -321,8 +369,11 @@ public class NetClient implements ApplicationListener{
                     created = true;
                 }
 
-                //read the entity
-                entity.read(input);
+                //read the entity; states without a length are read even if the entity is discarded
+                entity.read(stateInput);
+                if(left){
+                    continue;
+                }
 
                 if(created && entity.getInterpolator() != null && entity.getInterpolator().target != null){
                     //set initial starting position
@@ -337,13 +388,50 @@ public class NetClient implements ApplicationListener{
                     netClient.addRemovedEntity(entity.getID());
                 }
             }
+
+            snapshots.received(snapshotID, complete);
+            netClient.checkSnapshot(snapshotID);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Remote(variants = Variant.one, priority = PacketPriority.low)
+    public static void onEntitiesLeave(int snapshotID, short amount, byte[] data){
+        try{
+            netClient.byteStream.setBytes(data);
+            DataInputStream input = netClient.dataStream;
+            IntIntMap left = netClient.leftEntities;
+
+            //forget entities that left long ago; states of snapshots that old are no longer expected
+            IntIntMap.Entries entries = left.entries();
+            while(entries.hasNext){
+                if(entries.next().value < snapshotID - SnapshotHistory.capacity){
+                    entries.remove();
+                }
+            }
+
+            for(int i = 0; i < amount; i++){
+                int id = input.readInt();
+
+                for(EntityGroup<?> group : entities.all()){
+                    if(group.mappingEnabled() && group.getByID(id) != null){
+                        group.removeByID(id);
+                        break;
+                    }
+                }
+
+                //allow the entity to be added again when it comes back into view, but only from newer snapshots
+                netClient.removed.remove(id);
+                left.put(id, Math.max(left.get(id, -1), snapshotID));
+            }
         }catch(IOException e){
             throw new RuntimeException(e);
         }
     }
 
     @Remote(variants = Variant.both, priority = PacketPriority.low, unreliable = true)
-    public static void onBlockSnapshot(short amount, short dataLen, byte[] data){
+    public static void onBlockSnapshot(short amount, short dataLen, ByteBuffer data){
         try{
             netClient.byteStream.setBytes(net.decompressSnapshot(data, dataLen));
             DataInputStream input = netClient.dataStream;
@@ -363,8 +451,12 @@ public class NetClient implements ApplicationListener{
     }
 
     @Remote(variants = Variant.one, priority = PacketPriority.low, unreliable = true)
-    public static void onStateSnapshot(float waveTime, int wave, int enemies, short coreDataLen, byte[] coreData){
+    public static void onStateSnapshot(int snapshotID, short packets, float waveTime, int wave, int enemies, short coreDataLen, ByteBuffer coreData){
         try{
+            netClient.snapshots.begin(snapshotID);
+            netClient.snapshots.expect(snapshotID, packets);
+            netClient.checkSnapshot(snapshotID);
+
             if(wave > state.wave){
                 state.wave = wave;
                 Events.fire(new WaveEvent());
@@ -400,6 +492,7 @@ public class NetClient implements ApplicationListener{
 
         if(!state.is(State.menu)){
             if(!connecting) sync();
+            net.flushBatches();
         }else if(!connecting){
             net.disconnect();
         }else{ //...must be connecting
@@ -441,6 +534,9 @@ public class NetClient implements ApplicationListener{
         quietReset = false;
         quiet = false;
         lastSent = 0;
+        lastSnapshot = -1;
+        snapshots.clear();
+        leftEntities.clear();
 
         entities.clear();
         ui.chatfrag.clearMessages();
@@ -475,6 +571,13 @@ public class NetClient implements ApplicationListener{
         return removed.contains(id);
     }
 
+    /** Acknowledges a snapshot if all of its packets were received, so the server can use it as a baseline. */
+    private void checkSnapshot(int id){
+        if(id > lastSnapshot && snapshots.isComplete(id)){
+            lastSnapshot = id;
+        }
+    }
+
     void sync(){
 
         if(timer.get(0, playerSyncTime)){
@@ -487,7 +590,7 @@ public class NetClient implements ApplicationListener{
                 requests[i] = player.buildQueue().get(i);
             }
 
-            Call.onClientShapshot(lastSent++, player.x, player.y,
+            Call.onClientShapshot(lastSent++, lastSnapshot, player.x, player.y,
             player.pointerX, player.pointerY, player.rotation, player.baseRotation,
             player.velocity().x, player.velocity().y,
             player.getMineTile(),
@@ -7,6 +7,7 @@ import io.anuke.arc.graphics.*;
 import io.anuke.arc.math.*;
 import io.anuke.arc.math.geom.*;
 import io.anuke.arc.util.*;
+import io.anuke.arc.util.ArcAnnotate.*;
 import io.anuke.arc.util.CommandHandler.*;
 import io.anuke.arc.util.io.*;
 import io.anuke.mindustry.content.*;
@@ -21,17 +22,19 @@ import io.anuke.mindustry.gen.*;
 import io.anuke.mindustry.net.*;
 import io.anuke.mindustry.net.Administration.*;
 import io.anuke.mindustry.net.Packets.*;
+import io.anuke.mindustry.net.SnapshotCache.*;
 import io.anuke.mindustry.world.*;
 
 import java.io.*;
 import java.nio.*;
+import java.util.concurrent.*;
 import java.util.zip.*;
 
 import static io.anuke.mindustry.Vars.*;
 
 public class NetServer implements ApplicationListener{
-    private final static int maxSnapshotSize = 430, timerBlockSync = 0;
-    private final static float serverSyncTime = 12, kickDuration = 30 * 1000, blockSyncTime = 60 * 10;
+    private final static int maxSnapshotSize = 430, timerBlockSync = 0, timerFullBlockSync = 1, timerEntitySync = 2;
+    private final static float serverSyncTime = 12, kickDuration = 30 * 1000, blockSyncTime = 60, fullBlockSyncTime = 60 * 10;
     private final static Vector2 vector = new Vector2();
     private final static Rectangle viewport = new Rectangle();
     /** If a player goes away of their server-side coordinates by this distance, they get teleported back. */
@@ -41,7 +44,7 @@ public class NetServer implements ApplicationListener{
     public final CommandHandler clientCommands = new CommandHandler("/");
 
     private boolean closing = false;
-    private Interval timer = new Interval();
+    private Interval timer = new Interval(3);
 
     private ByteBuffer writeBuffer = ByteBuffer.allocate(127);
     private ByteBufferOutput outputBuffer = new ByteBufferOutput(writeBuffer);
@@ -50,6 +53,18 @@ public class NetServer implements ApplicationListener{
     private ReusableByteOutStream syncStream = new ReusableByteOutStream();
     /** Data stream for writing player sync data to. */
     private DataOutputStream dataStream = new DataOutputStream(syncStream);
+    /** Entity states captured once per frame, shared between all players. */
+    private SnapshotCache snapshotCache = new SnapshotCache(maxSnapshotSize);
+    /** Core item data of each team in the current sync tick, shared between the players of that team. */
+    private byte[][] coreData = new byte[Team.all.length][];
+    /** Workers that encode snapshots off the main thread, if enabled. */
+    private @Nullable ExecutorService syncWorkers;
+    private int syncThreads;
+    /** Snapshots being encoded by the workers, and the connections they belong to. */
+    private Array<SnapshotJob> snapshotJobs = new Array<>();
+    private ObjectSet<NetConnection> encoding = new ObjectSet<>();
+    /** shared world data sent to joining players */
+    private WorldDataCache worldCache = new WorldDataCache();
 
     public NetServer(){
 
@@ -210,6 +225,17 @@ public class NetServer implements ApplicationListener{
             RemoteReadServer.readPacket(packet.writeBuffer, packet.type, con.player);
         });
 
+        net.handleServer(InvokeBatchPacket.class, (con, packet) -> {
+            if(con.player == null) return;
+            ByteBuffer buffer = ByteBuffer.wrap(packet.data);
+            for(int i = 0; i < packet.amount; i++){
+                byte type = buffer.get();
+                int next = buffer.getShort() + buffer.position();
+                RemoteReadServer.readPacket(buffer, type, con.player);
+                buffer.position(next);
+            }
+        });
+
         registerCommands();
     }
 
@@ -413,14 +439,7 @@ public class NetServer implements ApplicationListener{
     }
 
     public void sendWorldData(Player player){
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        DeflaterOutputStream def = new FastDeflaterOutputStream(stream);
-        NetworkIO.writeWorld(player, def);
-        WorldStream data = new WorldStream();
-        data.stream = new ByteArrayInputStream(stream.toByteArray());
-        player.con.sendStream(data);
-
-        Log.debug("Packed {0} compressed bytes of world data.", stream.size());
+        worldCache.send(player);
     }
 
     public static void onDisconnect(Player player, String reason){
@@ -448,6 +467,7 @@ public class NetServer implements ApplicationListener{
     public static void onClientShapshot(
         Player player,
         int snapshotID,
+        int lastSnapshot,
         float x, float y,
         float pointerX, float pointerY,
         float rotation, float baseRotation,
@@ -527,6 +547,7 @@ public class NetServer implements ApplicationListener{
 
         connection.lastRecievedClientSnapshot = snapshotID;
         connection.lastRecievedClientTime = Time.millis();
+        connection.lastAckedSnapshot = lastSnapshot;
     }
 
     @Remote(targets = Loc.client, called = Loc.server)
@@ -605,6 +626,10 @@ public class NetServer implements ApplicationListener{
         if(!state.is(State.menu) && net.server()){
             sync();
         }
+
+        if(net.server()){
+            net.flushBatches();
+        }
     }
 
     public void kickAll(KickReason reason){
@@ -613,13 +638,18 @@ public class NetServer implements ApplicationListener{
         }
     }
 
-    /** Sends a block snapshot to all players. */
-    public void writeBlockSnapshots() throws IOException{
+    /**
+     * Sends a block snapshot to all players.
+     * @param full whether to send all synced tile entities, instead of only the ones that changed since they were last sent.
+     */
+    public void writeBlockSnapshots(boolean full) throws IOException{
         syncStream.reset();
 
         short sent = 0;
         for(TileEntity entity : tileGroup.all()){
-            if(!entity.block.sync) continue;
+            if(!entity.block.sync || entity.isSleeping() || (!full && !entity.isSyncDirty())) continue;
+
+            entity.clearSyncDirty();
             sent ++;
 
             dataStream.writeInt(entity.tile.pos());
@@ -627,8 +657,7 @@ public class NetServer implements ApplicationListener{
 
             if(syncStream.size() > maxSnapshotSize){
                 dataStream.close();
-                byte[] stateBytes = syncStream.toByteArray();
-                Call.onBlockSnapshot(sent, (short)stateBytes.length, net.compressSnapshot(stateBytes));
+                Call.onBlockSnapshot(sent, (short)syncStream.size(), net.compressSnapshot(syncStream.getBytes(), 0, syncStream.size()));
                 sent = 0;
                 syncStream.reset();
             }
@@ -636,72 +665,77 @@ public class NetServer implements ApplicationListener{
 
         if(sent > 0){
             dataStream.close();
-            byte[] stateBytes = syncStream.toByteArray();
-            Call.onBlockSnapshot(sent, (short)stateBytes.length, net.compressSnapshot(stateBytes));
+            Call.onBlockSnapshot(sent, (short)syncStream.size(), net.compressSnapshot(syncStream.getBytes(), 0, syncStream.size()));
         }
     }
 
     public void writeEntitySnapshot(Player player) throws IOException{
-        syncStream.reset();
-        ObjectSet<Tile> cores = state.teams.get(player.getTeam()).cores;
-
-        dataStream.writeByte(cores.size);
-
-        for(Tile tile : cores){
-            dataStream.writeInt(tile.pos());
-            tile.entity.items.write(dataStream);
-        }
-
-        dataStream.close();
-        byte[] stateBytes = syncStream.toByteArray();
-
-        //write basic state data.
-        Call.onStateSnapshot(player.con, state.wavetime, state.wave, state.enemies(), (short)stateBytes.length, net.compressSnapshot(stateBytes));
-
-        viewport.setSize(player.con.viewWidth, player.con.viewHeight).setCenter(player.con.viewX, player.con.viewY);
-
-        //check for syncable groups
-        for(EntityGroup<?> group : entities.all()){
-            if(group.isEmpty() || !(group.all().get(0) instanceof SyncTrait)) continue;
-
-            //make sure mapping is enabled for this group
-            if(!group.mappingEnabled()){
-                throw new RuntimeException("Entity group '" + group.getType() + "' contains SyncTrait entities, yet mapping is not enabled. In order for syncing to work, you must enable mapping for this group.");
-            }
+        coreData = new byte[Team.all.length][];
+        boolean interest = Core.settings.getBool("interestsync");
+        SnapshotJob job = createSnapshot(player, snapshotCache.frame(interest, Core.settings.getBool("deltasnapshots")), interest);
+        job.run();
+        job.send();
+    }
 
+    /**
+     * Captures everything needed to encode the next entity snapshot of a player. Must be called on the main thread.
+     * @param frame entity states of this sync tick. Delta snapshots are used if its chunks are encoded for them.
+     * @param interest whether to cull entities outside the area of interest of the player.
+     */
+    private SnapshotJob createSnapshot(Player player, Frame frame, boolean interest) throws IOException{
+        NetConnection con = player.con;
+        int snapshot = ++con.lastSentSnapshot;
+        boolean delta = frame.history;
+        //only encode deltas against snapshots the client has confirmed to have in full
+        int base = delta && con.snapshots.has(con.lastAckedSnapshot) ? con.lastAckedSnapshot : -1;
+
+        //cull entities outside the area of interest, if the client has sent its view yet
+        float margin = Core.settings.getInt("interestmargin");
+
+        viewport.setSize(con.viewWidth + margin * 2f, con.viewHeight + margin * 2f).setCenter(con.viewX, con.viewY);
+
+        byte[] cores = coreData[player.getTeam().ordinal()];
+        if(cores == null){
             syncStream.reset();
+            ObjectSet<Tile> tiles = state.teams.get(player.getTeam()).cores;
 
-            int sent = 0;
+            dataStream.writeByte(tiles.size);
 
-            for(Entity entity :  group.all()){
-                SyncTrait sync = (SyncTrait)entity;
-                if(!sync.isSyncing()) continue;
+            for(Tile tile : tiles){
+                dataStream.writeInt(tile.pos());
+                tile.entity.items.write(dataStream);
+            }
 
-                //write all entities now
-                dataStream.writeInt(entity.getID()); //write id
-                dataStream.writeByte(sync.getTypeID().id); //write type ID
-                sync.write(dataStream); //write entity
+            dataStream.close();
+            cores = coreData[player.getTeam().ordinal()] = syncStream.toByteArray();
+        }
 
-                sent++;
+        return new SnapshotJob(con, frame, snapshot, base, delta, interest && con.viewWidth > 0 ? viewport : null, maxSnapshotSize,
+            state.wavetime, state.wave, state.enemies(), cores);
+    }
 
-                if(syncStream.size() > maxSnapshotSize){
-                    dataStream.close();
-                    byte[] syncBytes = syncStream.toByteArray();
-                    Call.onEntitySnapshot(player.con, (byte)group.getID(), (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
-                    sent = 0;
-                    syncStream.reset();
-                }
-            }
+    /** Sets the amount of threads used to encode entity snapshots. 0 encodes them on the main thread. */
+    public void setSyncThreads(int threads){
+        syncThreads = Math.max(threads, 0);
 
-            if(sent > 0){
-                dataStream.close();
+        if(syncWorkers != null){
+            syncWorkers.shutdown();
+            syncWorkers = null;
+        }
 
-                byte[] syncBytes = syncStream.toByteArray();
-                Call.onEntitySnapshot(player.con, (byte)group.getID(), (short)sent, (short)syncBytes.length, net.compressSnapshot(syncBytes));
-            }
+        if(syncThreads > 0){
+            syncWorkers = Executors.newFixedThreadPool(syncThreads, r -> {
+                Thread thread = new Thread(r, "Snapshot Encoder");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
     }
 
+    public int getSyncThreads(){
+        return syncThreads;
+    }
+
     String fixName(String name){
         name = name.trim();
         if(name.equals("[") || name.equals("]")){
@@ -755,6 +789,24 @@ public class NetServer implements ApplicationListener{
     void sync(){
 
         try{
+            //send snapshots that have finished encoding on the workers
+            for(int i = 0; i < snapshotJobs.size; i++){
+                SnapshotJob job = snapshotJobs.get(i);
+                if(job.isDone()){
+                    if(job.con.isConnected() && !job.con.hasDisconnected){
+                        job.send();
+                    }
+                    encoding.remove(job.con);
+                    snapshotJobs.remove(i--);
+                }
+            }
+
+            //all players are synced on the same tick, so the entity states are captured and encoded once and shared between them
+            boolean syncEntities = timer.get(timerEntitySync, serverSyncTime);
+            boolean interest = Core.settings.getBool("interestsync");
+            Frame frame = null;
+            coreData = new byte[Team.all.length][];
+
             //iterate through each player
             for(int i = 0; i < playerGroup.size(); i++){
                 Player player = playerGroup.all().get(i);
@@ -767,13 +819,35 @@ public class NetServer implements ApplicationListener{
 
                 NetConnection connection = player.con;
 
-                if(!player.timer.get(Player.timerSync, serverSyncTime) || !connection.hasConnected) continue;
+                //skip players whose last snapshot is still being encoded
+                if(!syncEntities || !connection.hasConnected || encoding.contains(connection)) continue;
+
+                if(frame == null){
+                    frame = snapshotCache.frame(interest, Core.settings.getBool("deltasnapshots"));
+                }
+
+                SnapshotJob job = createSnapshot(player, frame, interest);
 
-                writeEntitySnapshot(player);
+                if(syncWorkers != null){
+                    encoding.add(connection);
+                    snapshotJobs.add(job);
+                    syncWorkers.execute(job);
+                }else{
+                    job.run();
+                    job.send();
+                }
             }
 
-            if(playerGroup.size() > 0 && Core.settings.getBool("blocksync") && timer.get(timerBlockSync, blockSyncTime)){
-                writeBlockSnapshots();
+            //resend everything once in a while, as block snapshots are unreliable
+            boolean blocksync = playerGroup.size() > 0 && Core.settings.getBool("blocksync");
+            boolean full = timer.get(timerFullBlockSync, fullBlockSyncTime);
+            if(full || timer.get(timerBlockSync, blockSyncTime)){
+                //log changed tile entities for joining players before block snapshots clear their dirty flags
+                worldCache.recordChanges(!blocksync);
+
+                if(blocksync){
+                    writeBlockSnapshots(full);
+                }
             }
 
         }catch(IOException e){
@@ -5,8 +5,11 @@ import io.anuke.arc.math.Mathf;
 import io.anuke.arc.math.geom.*;
 import io.anuke.mindustry.entities.traits.Entity;
 import io.anuke.mindustry.entities.traits.SolidTrait;
+import io.anuke.mindustry.entities.traits.TeamTrait;
+import io.anuke.mindustry.game.Team;
 import io.anuke.mindustry.world.Tile;
 
+import static io.anuke.mindustry.Vars.state;
 import static io.anuke.mindustry.Vars.tilesize;
 import static io.anuke.mindustry.Vars.world;
 
@@ -26,6 +29,13 @@ public class EntityCollisions{
     //entity collisions
     private Array<SolidTrait> arrOut = new Array<>();
 
+    //sweep and prune
+    private Array<Proxy> proxies = new Array<>(false, 64);
+    private Array<Proxy> proxyPool = new Array<>(false, 64);
+    private Array<Proxy> activeBullets = new Array<>(false, 64);
+    private Array<Proxy> activeTargets = new Array<>(false, 64);
+    private boolean[][] enemies = new boolean[Team.all.length][Team.all.length];
+
     public void move(SolidTrait entity, float deltax, float deltay){
 
         boolean movedx = false;
@@ -110,14 +120,14 @@ public class EntityCollisions{
     @SuppressWarnings("unchecked")
     public <T extends Entity> void updatePhysics(EntityGroup<T> group){
 
-        QuadTree tree = group.tree();
-        tree.clear();
+        SpatialIndex index = group.index();
+        index.begin();
 
         for(Entity entity : group.all()){
             if(entity instanceof SolidTrait){
                 SolidTrait s = (SolidTrait)entity;
                 s.lastPosition().set(s.getX(), s.getY());
-                tree.insert(s);
+                index.update(s);
             }
         }
     }
@@ -206,6 +216,97 @@ public class EntityCollisions{
         }
     }
 
+    /**
+     * Collides every bullet with the entities of all target groups in a single pass.
+     * The broad phase sorts the swept bullet hitboxes and the target hitboxes along the x axis and sweeps over them,
+     * so only pairs that overlap on both axes and belong to enemy teams are tested precisely.
+     */
+    public void collideBullets(EntityGroup<?> bullets, Array<EntityGroup<?>> targets){
+        if(bullets.isEmpty()) return;
+
+        for(Team team : Team.all){
+            for(Team other : Team.all){
+                enemies[team.ordinal()][other.ordinal()] = state.teams.areEnemies(team, other);
+            }
+        }
+
+        proxyPool.addAll(proxies);
+        proxies.clear();
+
+        for(Entity entity : bullets.all()){
+            if(!(entity instanceof SolidTrait)) continue;
+
+            SolidTrait solid = (SolidTrait)entity;
+
+            solid.hitbox(r1);
+            r1.x += (solid.lastPosition().x - solid.getX());
+            r1.y += (solid.lastPosition().y - solid.getY());
+
+            solid.hitbox(r2);
+            r2.merge(r1);
+
+            proxy(solid, true, r2);
+        }
+
+        for(EntityGroup<?> group : targets){
+            for(Entity entity : group.all()){
+                if(!(entity instanceof SolidTrait)) continue;
+
+                SolidTrait solid = (SolidTrait)entity;
+                solid.hitbox(r1);
+                proxy(solid, false, r1);
+            }
+        }
+
+        proxies.sort((a, b) -> Float.compare(a.x, b.x));
+        activeBullets.clear();
+        activeTargets.clear();
+
+        for(Proxy proxy : proxies){
+            prune(activeBullets, proxy.x);
+            prune(activeTargets, proxy.x);
+
+            Array<Proxy> others = proxy.bullet ? activeTargets : activeBullets;
+
+            for(int i = 0; i < others.size; i++){
+                Proxy other = others.get(i);
+                Proxy bullet = proxy.bullet ? proxy : other, target = proxy.bullet ? other : proxy;
+
+                //only enemy teams can collide, so skip allied pairs before any other checks
+                if(bullet.team != null && target.team != null && !enemies[bullet.team.ordinal()][target.team.ordinal()]) continue;
+
+                if(bullet.y < target.y2 && bullet.y2 > target.y && bullet.x < target.x2 && bullet.x2 > target.x){
+                    checkCollide(bullet.entity, target.entity);
+                }
+            }
+
+            (proxy.bullet ? activeBullets : activeTargets).add(proxy);
+        }
+
+        proxies.each(p -> p.entity = null);
+    }
+
+    private void proxy(SolidTrait entity, boolean bullet, Rectangle rect){
+        Proxy proxy = proxyPool.isEmpty() ? new Proxy() : proxyPool.pop();
+        proxy.entity = entity;
+        proxy.bullet = bullet;
+        proxy.team = entity instanceof TeamTrait ? ((TeamTrait)entity).getTeam() : null;
+        proxy.x = rect.x;
+        proxy.y = rect.y;
+        proxy.x2 = rect.x + rect.width;
+        proxy.y2 = rect.y + rect.height;
+        proxies.add(proxy);
+    }
+
+    /** Removes all proxies that end before this x position. */
+    private void prune(Array<Proxy> active, float x){
+        for(int i = active.size - 1; i >= 0; i--){
+            if(active.get(i).x2 <= x){
+                active.removeIndex(i);
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public void collideGroups(EntityGroup<?> groupa, EntityGroup<?> groupb){
 
@@ -223,7 +324,7 @@ public class EntityCollisions{
             r2.merge(r1);
 
             arrOut.clear();
-            groupb.tree().getIntersect(arrOut, r2);
+            groupb.index().intersect(r2, arrOut);
 
             for(SolidTrait sc : arrOut){
                 sc.hitbox(r1);
@@ -233,4 +334,12 @@ public class EntityCollisions{
             }
         }
     }
+
+    /** Bounding box of an entity during the sweep and prune broad phase. */
+    private static class Proxy{
+        SolidTrait entity;
+        Team team;
+        boolean bullet;
+        float x, y, x2, y2;
+    }
 }
@@ -5,6 +5,8 @@ import io.anuke.arc.collection.*;
 import io.anuke.arc.func.*;
 import io.anuke.arc.graphics.*;
 import io.anuke.arc.math.geom.*;
+import io.anuke.arc.math.geom.QuadTree.*;
+import io.anuke.arc.util.ArcAnnotate.*;
 import io.anuke.mindustry.entities.traits.*;
 
 import static io.anuke.mindustry.Vars.collisions;
@@ -21,12 +23,15 @@ public class EntityGroup<T extends Entity>{
     private final Array<T> intersectArray = new Array<>();
     private final Rectangle intersectRect = new Rectangle();
     private IntMap<T> map;
-    private QuadTree tree;
+    private SpatialIndex index;
     private Cons<T> removeListener;
     private Cons<T> addListener;
+    private @Nullable Runnable updater;
 
     private final Rectangle viewport = new Rectangle();
     private int count = 0;
+    private boolean parallel;
+    private boolean syncCulling;
 
     public EntityGroup(int id, Class<T> type, boolean useTree){
         this.useTree = useTree;
@@ -34,7 +39,7 @@ public class EntityGroup<T extends Entity>{
         this.type = type;
 
         if(useTree){
-            tree = new QuadTree<>(new Rectangle(0, 0, 0, 0));
+            index = new GridIndex<>();
         }
     }
 
@@ -45,6 +50,16 @@ public class EntityGroup<T extends Entity>{
             collisions.updatePhysics(this);
         }
 
+        updateEntities();
+    }
+
+    /** Updates the entities of this group, using the custom updater if one is set. */
+    public void updateEntities(){
+        if(updater != null){
+            updater.run();
+            return;
+        }
+
         for(Entity e : all()){
             e.update();
         }
@@ -99,6 +114,39 @@ public class EntityGroup<T extends Entity>{
         return map != null;
     }
 
+    /**
+     * Allows the entities of this group to be updated on multiple threads, see {@link ParallelUpdater}.
+     * Only enable this for entities that do not write to shared state in their update method, except through
+     * {@link #add(Entity)}, {@link #remove(Entity)} or {@link ParallelUpdater#post(Runnable)}.
+     */
+    public EntityGroup<T> enableParallel(){
+        parallel = true;
+        return this;
+    }
+
+    public boolean isParallel(){
+        return parallel;
+    }
+
+    /**
+     * Allows the server to only sync the entities of this group that are inside a player's area of interest.
+     * Requires a spatial index. Only enable this for entities that can be removed on clients without side effects.
+     */
+    public EntityGroup<T> enableSyncCulling(){
+        syncCulling = true;
+        return this;
+    }
+
+    public boolean isSyncCulled(){
+        return syncCulling && useTree;
+    }
+
+    /** Sets a custom updater, which is responsible for updating the entities of this group instead of the default loop. */
+    public EntityGroup<T> setUpdater(Runnable updater){
+        this.updater = updater;
+        return this;
+    }
+
     public Class<T> getType(){
         return type;
     }
@@ -112,6 +160,10 @@ public class EntityGroup<T extends Entity>{
         for(T e : entitiesToAdd){
             if(e == null)
                 continue;
+            //entities that were removed and re-added before this update are still in the array, and were never removed
+            if(contains(e)) continue;
+
+            e.setGroupIndex(entityArray.size);
             entityArray.add(e);
             e.added();
 
@@ -123,16 +175,45 @@ public class EntityGroup<T extends Entity>{
         entitiesToAdd.clear();
 
         for(T e : entitiesToRemove){
-            entityArray.removeValue(e, true);
+            //entities that were added back after being removed stay in the group
+            if(e.getGroup() == this) continue;
+
+            removeIndex(e);
             if(map != null){
                 map.remove(e.getID());
             }
+            if(index != null && e instanceof QuadTreeObject){
+                index.remove((QuadTreeObject)e);
+            }
             e.removed();
         }
 
         entitiesToRemove.clear();
     }
 
+    /** @return whether this entity is in the entity array, using its stored index. */
+    private boolean contains(T e){
+        int index = e.getGroupIndex();
+        return index >= 0 && index < entityArray.size && entityArray.get(index) == e;
+    }
+
+    /** Swaps the entity with the last one in the array and removes it. */
+    private void removeIndex(T e){
+        if(!contains(e)){
+            //the index belongs to another group, fall back to a search
+            entityArray.removeValue(e, true);
+            return;
+        }
+
+        int index = e.getGroupIndex();
+        T last = entityArray.pop();
+        if(last != e){
+            entityArray.set(index, last);
+            last.setGroupIndex(index);
+        }
+        e.setGroupIndex(-1);
+    }
+
     public T getByID(int id){
         if(map == null) throw new RuntimeException("Mapping is not enabled for group " + id + "!");
         return map.get(id);
@@ -141,18 +222,9 @@ public class EntityGroup<T extends Entity>{
     public void removeByID(int id){
         if(map == null) throw new RuntimeException("Mapping is not enabled for group " + id + "!");
         T t = map.get(id);
-        if(t != null){ //remove if present in map already
+        //queued entities are mapped when they are added, so there is no need to look for them separately
+        if(t != null){
             remove(t);
-        }else{ //maybe it's being queued?
-            for(T check : entitiesToAdd){
-                if(check.getID() == id){ //if it is indeed queued, remove it
-                    entitiesToAdd.removeValue(check, true);
-                    if(removeListener != null){
-                        removeListener.get(check);
-                    }
-                    break;
-                }
-            }
         }
     }
 
@@ -160,7 +232,7 @@ public class EntityGroup<T extends Entity>{
     public void intersect(float x, float y, float width, float height, Cons<? super T> out){
         //don't waste time for empty groups
         if(isEmpty()) return;
-        tree().getIntersect(out, x, y, width, height);
+        index().intersect(x, y, width, height, out);
     }
 
     @SuppressWarnings("unchecked")
@@ -168,19 +240,25 @@ public class EntityGroup<T extends Entity>{
         intersectArray.clear();
         //don't waste time for empty groups
         if(isEmpty()) return intersectArray;
-        tree().getIntersect(intersectArray, intersectRect.set(x, y, width, height));
+        index().intersect(intersectRect.set(x, y, width, height), intersectArray);
         return intersectArray;
     }
 
-    public QuadTree tree(){
-        if(!useTree) throw new RuntimeException("This group does not support quadtrees! Enable quadtrees when creating it.");
-        return tree;
+    public SpatialIndex index(){
+        if(!useTree) throw new RuntimeException("This group does not support spatial indexing! Enable it when creating the group.");
+        return index;
+    }
+
+    /** Replaces the spatial index of this group. The new index is filled on the next update. */
+    public void setIndex(SpatialIndex index){
+        if(!useTree) throw new RuntimeException("This group does not support spatial indexing! Enable it when creating the group.");
+        this.index = index;
     }
 
-    /** Resizes the internal quadtree, if it is enabled.*/
+    /** Resizes the internal spatial index, if it is enabled.*/
     public void resize(float x, float y, float w, float h){
         if(useTree){
-            tree = new QuadTree<>(new Rectangle(x, y, w, h));
+            index.resize(x, y, w, h);
         }
     }
 
@@ -202,6 +280,10 @@ public class EntityGroup<T extends Entity>{
 
     public void add(T type){
         if(type == null) throw new RuntimeException("Cannot add a null entity!");
+        if(ParallelUpdater.isDeferring()){
+            ParallelUpdater.post(() -> add(type));
+            return;
+        }
         if(type.getGroup() != null) return;
         type.setGroup(this);
         entitiesToAdd.add(type);
@@ -217,6 +299,10 @@ public class EntityGroup<T extends Entity>{
 
     public void remove(T type){
         if(type == null) throw new RuntimeException("Cannot remove a null entity!");
+        if(ParallelUpdater.isDeferring()){
+            ParallelUpdater.post(() -> remove(type));
+            return;
+        }
         type.setGroup(null);
         entitiesToRemove.add(type);
 
@@ -225,10 +311,28 @@ public class EntityGroup<T extends Entity>{
         }
     }
 
+    /** Removes all the specified entities. */
+    public void removeAll(Array<? extends T> entities){
+        for(int i = 0; i < entities.size; i++){
+            remove(entities.get(i));
+        }
+    }
+
+    /** Removes all entities that match the predicate. They are removed from the entity array on the next update. */
+    public void removeAll(Boolf<T> pred){
+        for(int i = 0; i < entityArray.size; i++){
+            T e = entityArray.get(i);
+            if(e.getGroup() == this && pred.get(e)){
+                remove(e);
+            }
+        }
+    }
+
     public void clear(){
         for(T entity : entityArray){
             entity.removed();
             entity.setGroup(null);
+            entity.setGroupIndex(-1);
         }
 
         for(T entity : entitiesToAdd)
@@ -242,6 +346,8 @@ public class EntityGroup<T extends Entity>{
         entityArray.clear();
         if(map != null)
             map.clear();
+        if(index != null)
+            index.clear();
     }
 
     public T find(Boolf<T> pred){
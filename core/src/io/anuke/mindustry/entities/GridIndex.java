@@ -0,0 +1,148 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.func.*;
+import io.anuke.arc.math.*;
+import io.anuke.arc.math.geom.*;
+import io.anuke.arc.math.geom.QuadTree.*;
+
+import static io.anuke.mindustry.Vars.tilesize;
+
+/**
+ * A spatial index that places objects in a uniform grid of cells, based on the center of their hitbox.
+ * Objects are only moved to another cell when they cross a cell border, so nothing is rebuilt or allocated every frame.
+ */
+@SuppressWarnings("unchecked")
+public class GridIndex<T extends QuadTreeObject> implements SpatialIndex<T>{
+    /** Default size of a cell, in world units. */
+    public static final float defaultCellSize = tilesize * 8;
+
+    private final float cellSize;
+    /** cell index of each object in this index */
+    private final ObjectIntMap<T> positions = new ObjectIntMap<>();
+    private final Rectangle rect = new Rectangle();
+    private Array<T>[] cells;
+    private float x, y;
+    private int width, height;
+    /** largest hitbox dimension of any object in this index; queries are expanded by this amount */
+    private float maxSize;
+
+    public GridIndex(float cellSize){
+        this.cellSize = cellSize;
+        resize(0, 0, 0, 0);
+    }
+
+    public GridIndex(){
+        this(defaultCellSize);
+    }
+
+    @Override
+    public void begin(){
+
+    }
+
+    @Override
+    public void update(T object){
+        object.hitbox(rect);
+        maxSize = Math.max(maxSize, Math.max(rect.width, rect.height));
+
+        int cell = cell(rect.x + rect.width / 2f, rect.y + rect.height / 2f);
+        int last = positions.get(object, -1);
+        if(last == cell) return;
+
+        if(last != -1){
+            cells[last].removeValue(object, true);
+        }
+
+        if(cells[cell] == null){
+            cells[cell] = new Array<>(false, 16);
+        }
+
+        cells[cell].add(object);
+        positions.put(object, cell);
+    }
+
+    @Override
+    public void remove(T object){
+        int last = positions.remove(object, -1);
+        if(last != -1){
+            cells[last].removeValue(object, true);
+        }
+    }
+
+    @Override
+    public void clear(){
+        for(Array<T> cell : cells){
+            if(cell != null){
+                cell.clear();
+            }
+        }
+        positions.clear();
+        maxSize = 0f;
+    }
+
+    @Override
+    public void resize(float x, float y, float width, float height){
+        this.x = x;
+        this.y = y;
+        this.width = Math.max(Mathf.ceil(width / cellSize), 1);
+        this.height = Math.max(Mathf.ceil(height / cellSize), 1);
+        cells = new Array[this.width * this.height];
+        positions.clear();
+        maxSize = 0f;
+    }
+
+    @Override
+    public void intersect(float x, float y, float width, float height, Cons<? super T> out){
+        int minx = cellX(x - maxSize), miny = cellY(y - maxSize);
+        int maxx = cellX(x + width + maxSize), maxy = cellY(y + height + maxSize);
+
+        for(int cx = minx; cx <= maxx; cx++){
+            for(int cy = miny; cy <= maxy; cy++){
+                Array<T> cell = cells[cx + cy * this.width];
+                if(cell == null) continue;
+
+                for(int i = 0; i < cell.size; i++){
+                    T object = cell.get(i);
+                    object.hitbox(rect);
+                    if(rect.overlaps(x, y, width, height)){
+                        out.get(object);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void intersect(Rectangle area, Array<? super T> out){
+        int minx = cellX(area.x - maxSize), miny = cellY(area.y - maxSize);
+        int maxx = cellX(area.x + area.width + maxSize), maxy = cellY(area.y + area.height + maxSize);
+
+        for(int cx = minx; cx <= maxx; cx++){
+            for(int cy = miny; cy <= maxy; cy++){
+                Array<T> cell = cells[cx + cy * this.width];
+                if(cell == null) continue;
+
+                for(int i = 0; i < cell.size; i++){
+                    T object = cell.get(i);
+                    object.hitbox(rect);
+                    if(rect.overlaps(area)){
+                        out.add(object);
+                    }
+                }
+            }
+        }
+    }
+
+    private int cell(float wx, float wy){
+        return cellX(wx) + cellY(wy) * width;
+    }
+
+    private int cellX(float wx){
+        return Mathf.clamp((int)((wx - x) / cellSize), 0, width - 1);
+    }
+
+    private int cellY(float wy){
+        return Mathf.clamp((int)((wy - y) / cellSize), 0, height - 1);
+    }
+}
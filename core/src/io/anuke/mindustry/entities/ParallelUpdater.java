@@ -0,0 +1,123 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.*;
+import io.anuke.mindustry.entities.traits.*;
+
+import java.util.concurrent.*;
+
+import static io.anuke.mindustry.Vars.collisions;
+
+/**
+ * Updates entity groups, using a pool of worker threads for the entities of groups marked as parallel.
+ * Groups are updated one after another in the same order as on a single thread, so entities added by one group are updated by later groups in the same frame.
+ * Entities of parallel groups are updated in fixed-size chunks. Their updates may only read shared state;
+ * writes, such as removing entities or anything passed to {@link #post(Runnable)}, are recorded in a command buffer per chunk.
+ * The buffers are applied in chunk order on the calling thread once all chunks are done, so the result does not depend on thread scheduling.
+ */
+public class ParallelUpdater{
+    /** Amount of entities updated by a single task. */
+    private static final int chunkSize = 64;
+    /** Command buffer of the chunk being updated by the current thread, or null if it is not updating entities in parallel. */
+    private static final ThreadLocal<Array<Runnable>> commands = new ThreadLocal<>();
+
+    private final ExecutorService executor;
+    private final Array<Array<Runnable>> buffers = new Array<>();
+    private final Array<Future<?>> futures = new Array<>();
+
+    public ParallelUpdater(int threads){
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Entity Update Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** @return whether the current thread is updating entities in parallel, in which case writes must be deferred. */
+    public static boolean isDeferring(){
+        return commands.get() != null;
+    }
+
+    /** Runs a write to shared state now, or records it in the current command buffer if this thread is updating entities in parallel. */
+    public static void post(Runnable command){
+        Array<Runnable> buffer = commands.get();
+        if(buffer == null){
+            command.run();
+        }else{
+            buffer.add(command);
+        }
+    }
+
+    /**
+     * Updates all groups in order. Like {@link EntityGroup#update()}, each group processes its pending additions and removals
+     * and updates its spatial index before its entities are updated; groups that span a single chunk are updated on the calling thread.
+     */
+    public void update(EntityGroup<?>... groups){
+        for(EntityGroup<?> group : groups){
+            group.updateEvents();
+
+            if(group.useTree()){
+                collisions.updatePhysics(group);
+            }
+
+            if(group.isParallel() && group.size() > chunkSize){
+                updateParallel(group);
+            }else{
+                group.updateEntities();
+            }
+        }
+    }
+
+    /** Shuts down the worker threads. This updater can't be used afterwards. */
+    public void dispose(){
+        executor.shutdownNow();
+    }
+
+    private void updateParallel(EntityGroup<?> group){
+        Array<? extends Entity> entities = group.all();
+        int chunks = (entities.size + chunkSize - 1) / chunkSize;
+
+        while(buffers.size < chunks){
+            buffers.add(new Array<>());
+        }
+
+        for(int i = 0; i < chunks; i++){
+            Array<Runnable> buffer = buffers.get(i);
+            int from = i * chunkSize, to = Math.min(from + chunkSize, entities.size);
+
+            futures.add(executor.submit(() -> {
+                commands.set(buffer);
+                try{
+                    for(int j = from; j < to; j++){
+                        entities.get(j).update();
+                    }
+                }finally{
+                    commands.remove();
+                }
+            }));
+        }
+        await();
+
+        //apply writes in a deterministic order
+        for(int i = 0; i < chunks; i++){
+            Array<Runnable> buffer = buffers.get(i);
+            for(int j = 0; j < buffer.size; j++){
+                buffer.get(j).run();
+            }
+            buffer.clear();
+        }
+    }
+
+    private void await(){
+        try{
+            for(Future<?> future : futures){
+                future.get();
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch(ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }finally{
+            futures.clear();
+        }
+    }
+}
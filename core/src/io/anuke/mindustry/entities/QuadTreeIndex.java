@@ -0,0 +1,47 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.func.*;
+import io.anuke.arc.math.geom.*;
+import io.anuke.arc.math.geom.QuadTree.*;
+
+/** A spatial index backed by a quadtree. The tree is cleared and rebuilt every frame. */
+@SuppressWarnings("unchecked")
+public class QuadTreeIndex<T extends QuadTreeObject> implements SpatialIndex<T>{
+    private QuadTree tree = new QuadTree<>(new Rectangle(0, 0, 0, 0));
+
+    @Override
+    public void begin(){
+        tree.clear();
+    }
+
+    @Override
+    public void update(T object){
+        tree.insert(object);
+    }
+
+    @Override
+    public void remove(T object){
+        //removed objects are dropped when the tree is rebuilt
+    }
+
+    @Override
+    public void clear(){
+        tree.clear();
+    }
+
+    @Override
+    public void resize(float x, float y, float width, float height){
+        tree = new QuadTree<>(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void intersect(float x, float y, float width, float height, Cons<? super T> out){
+        tree.getIntersect(out, x, y, width, height);
+    }
+
+    @Override
+    public void intersect(Rectangle rect, Array<? super T> out){
+        tree.getIntersect(out, rect);
+    }
+}
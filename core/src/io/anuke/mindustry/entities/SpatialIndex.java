@@ -0,0 +1,31 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.func.*;
+import io.anuke.arc.math.geom.*;
+import io.anuke.arc.math.geom.QuadTree.*;
+
+/** Spatial index of the solid entities in a group. Used for collisions and range queries. */
+public interface SpatialIndex<T extends QuadTreeObject>{
+
+    /** Called every frame, before the positions of all objects are updated. */
+    void begin();
+
+    /** Updates the position of an object in this index, inserting it if it is not present yet. */
+    void update(T object);
+
+    /** Removes an object from this index. */
+    void remove(T object);
+
+    /** Removes all objects from this index. */
+    void clear();
+
+    /** Sets the area covered by this index. This removes all objects. */
+    void resize(float x, float y, float width, float height);
+
+    /** Calls the consumer for every object with a hitbox that intersects this rectangle. */
+    void intersect(float x, float y, float width, float height, Cons<? super T> out);
+
+    /** Adds every object with a hitbox that intersects this rectangle to the output array. */
+    void intersect(Rectangle rect, Array<? super T> out);
+}
@@ -0,0 +1,85 @@
+package io.anuke.mindustry.entities;
+
+import io.anuke.arc.collection.*;
+import io.anuke.mindustry.entities.type.*;
+
+/**
+ * Schedules updates of tile entities. Sleeping entities stay in the tile group, so they are still {@link TileEntity#isAdded() added}, but are not updated.
+ * Awake entities are kept in a dense array and know their index in it, so waking up is an append and falling asleep is a swap-removal.
+ */
+public class TileUpdateScheduler{
+    /** entities that are updated every frame, in no particular order */
+    private final Array<TileEntity> active = new Array<>(false, 64);
+    /** entities that fell asleep or were removed while updating; they are only swap-removed once all entities are updated */
+    private final Array<TileEntity> deactivated = new Array<>(false, 16);
+    private boolean updating;
+
+    /** Updates all awake entities. Entities that wake up during this update are first updated in the next one. */
+    public void update(){
+        int size = active.size;
+
+        //the array only grows while updating, so every entity is updated exactly once
+        updating = true;
+        try{
+            for(int i = 0; i < size; i++){
+                active.get(i).update();
+            }
+        }finally{
+            updating = false;
+        }
+
+        for(int i = 0; i < deactivated.size; i++){
+            remove(deactivated.get(i));
+        }
+        deactivated.clear();
+    }
+
+    /** Schedules an entity for updates. Does nothing if it is already scheduled. */
+    public void activate(TileEntity entity){
+        if(entity.updateIndex != -1){
+            //cancel a deactivation made earlier in this update
+            if(updating) deactivated.removeValue(entity, true);
+            return;
+        }
+
+        entity.updateIndex = active.size;
+        active.add(entity);
+    }
+
+    /** Stops updating an entity. Does nothing if it is not scheduled. */
+    public void deactivate(TileEntity entity){
+        if(entity.updateIndex == -1) return;
+
+        if(updating){
+            if(!deactivated.contains(entity, true)) deactivated.add(entity);
+        }else{
+            remove(entity);
+        }
+    }
+
+    /** @return the amount of entities that are currently updated. */
+    public int activeCount(){
+        return active.size;
+    }
+
+    /** Removes all scheduled entities. */
+    public void clear(){
+        for(TileEntity entity : active){
+            entity.updateIndex = -1;
+        }
+        active.clear();
+        deactivated.clear();
+    }
+
+    private void remove(TileEntity entity){
+        int index = entity.updateIndex;
+        if(index == -1) return;
+
+        TileEntity last = active.pop();
+        if(last != entity){
+            active.set(index, last);
+            last.updateIndex = index;
+        }
+        entity.updateIndex = -1;
+    }
+}
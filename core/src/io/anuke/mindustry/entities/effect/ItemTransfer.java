@@ -31,19 +31,21 @@ public class ItemTransfer extends TimedEntity implements DrawTrait{
     public ItemTransfer(){
     }
 
-    @Remote(called = Loc.server, unreliable = true)
+    @Remote(called = Loc.server, unreliable = true, batched = true)
     public static void transferItemEffect(Item item, float x, float y, Unit to){
         if(to == null) return;
         create(item, x, y, to, () -> {
         });
     }
 
+    //not batched, as it changes the items of the unit, which must not be applied out of order with unbatched calls
     @Remote(called = Loc.server, unreliable = true)
     public static void transferItemToUnit(Item item, float x, float y, Unit to){
         if(to == null) return;
         create(item, x, y, to, () -> to.addItem(item));
     }
 
+    //not batched, as it changes the items of the tile, which must not be applied after its onTileDestroyed or other item changes
     @Remote(called = Loc.server)
     public static void transferItemTo(Item item, int amount, float x, float y, Tile tile){
         if(tile == null || tile.entity == null || tile.entity.items == null) return;
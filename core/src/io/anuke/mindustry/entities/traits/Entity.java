@@ -36,6 +36,11 @@ public interface Entity extends MoveTrait{
 
     void setGroup(EntityGroup group);
 
+    /** @return the index of this entity in its group's entity array, or -1 if it is not in one. Used by {@link EntityGroup} only. */
+    int getGroupIndex();
+
+    void setGroupIndex(int index);
+
     default boolean isAdded(){
         return getGroup() != null;
     }
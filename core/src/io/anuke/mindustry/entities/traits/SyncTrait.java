@@ -1,6 +1,7 @@
 package io.anuke.mindustry.entities.traits;
 
 import io.anuke.mindustry.net.Interpolator;
+import io.anuke.mindustry.net.SyncIO;
 
 import java.io.*;
 
@@ -41,6 +42,14 @@ public interface SyncTrait extends Entity, TypeTrait{
         return true;
     }
 
+    /**
+     * Whether this entity writes its sync data with the compact encodings of {@link SyncIO}, trading precision for bandwidth.
+     * Must return the same value on the server and the client.
+     */
+    default boolean isQuantized(){
+        return false;
+    }
+
     //Read and write sync data, usually position
     void write(DataOutput data) throws IOException;
 
@@ -372,6 +372,11 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
         return 0;
     }
 
+    @Override
+    public boolean isQuantized(){
+        return true;
+    }
+
     @Override
     public void writeSave(DataOutput stream) throws IOException{
         super.writeSave(stream);
@@ -392,7 +397,7 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
 
     @Override
     public void write(DataOutput data) throws IOException{
-        super.writeSave(data);
+        writeSync(data);
         data.writeByte(type.id);
         data.writeInt(spawner);
     }
@@ -401,7 +406,7 @@ public abstract class BaseUnit extends Unit implements ShooterTrait{
     public void read(DataInput data) throws IOException{
         float lastx = x, lasty = y, lastrot = rotation;
 
-        super.readSave(data, version());
+        readSync(data, version());
 
         this.type = content.getByID(ContentType.unit, data.readByte());
         this.spawner = data.readInt();
@@ -78,13 +78,13 @@ public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Pool
     }
 
     /** Internal use only. */
-    @Remote(called = Loc.server, unreliable = true)
+    @Remote(called = Loc.server, unreliable = true, batched = true)
     public static void createBullet(BulletType type, float x, float y, float angle){
         create(type, null, Team.derelict, x, y, angle);
     }
 
     /** ok */
-    @Remote(called = Loc.server, unreliable = true)
+    @Remote(called = Loc.server, unreliable = true, batched = true)
     public static void createBullet(BulletType type, Team team, float x, float y, float angle){
         create(type, null, team, x, y, angle);
     }
@@ -190,7 +190,10 @@ public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Pool
 
     @Override
     public void update(){
-        type.update(this);
+        //bullets are updated in parallel; everything that writes to other entities or creates them is deferred
+        //when deferred, type.update runs after the bullet moved, so homing steers and trails are drawn one frame later than in a serial update;
+        //that is one tick of a path that is already corrected every tick, and the bullet state stays consistent as nothing else reads it in between
+        ParallelUpdater.post(() -> type.update(this));
 
         x += velocity.x * Time.delta();
         y += velocity.y * Time.delta();
@@ -201,7 +204,7 @@ public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Pool
         time = Mathf.clamp(time, 0, type.lifetime);
 
         if(time >= type.lifetime){
-            if(!supressCollision) type.despawned(this);
+            if(!supressCollision) ParallelUpdater.post(() -> type.despawned(this));
             remove();
         }
 
@@ -212,14 +215,21 @@ public class Bullet extends SolidEntity implements DamageTrait, ScaleTrait, Pool
                 if(tile == null) return false;
 
                 if(tile.entity != null && tile.entity.collide(this) && type.collides(this, tile) && !tile.entity.isDead() && (type.collidesTeam || tile.getTeam() != team)){
-                    if(tile.getTeam() != team){
-                        tile.entity.collision(this);
-                    }
-
-                    if(!supressCollision){
-                        type.hitTile(this, tile);
-                        remove();
-                    }
+                    boolean hit = !supressCollision;
+
+                    ParallelUpdater.post(() -> {
+                        //the tile may have been destroyed by a bullet that was updated in parallel
+                        if(tile.entity == null || tile.entity.isDead()) return;
+
+                        if(tile.getTeam() != team){
+                            tile.entity.collision(this);
+                        }
+
+                        if(hit){
+                            type.hitTile(this, tile);
+                            remove();
+                        }
+                    });
 
                     return true;
                 }
@@ -42,14 +42,23 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     /** List of (cached) tiles with entities in proximity, used for outputting to */
     private Array<Tile> proximity = new Array<>(8);
     private boolean dead = false;
+    /** Do not modify. Index of this entity in the tile update scheduler, or -1 if it is not updated. */
+    public transient int updateIndex = -1;
+    /** Versions of the modules of this entity when it was last sent in a block snapshot. */
+    private transient int syncedItems = -1, syncedLiquids = -1, syncedPower = -1;
+    /** Whether state that is not kept in modules, such as the configuration or health, changed since this entity was last sent in a block snapshot. */
+    private transient boolean syncDirty = true;
+
     private boolean sleeping;
     private float sleepTime;
     private @Nullable SoundLoop sound;
 
+    //not batched, as it must not arrive after the onTileDestroyed of the same tile
     @Remote(called = Loc.server, unreliable = true)
     public static void onTileDamage(Tile tile, float health){
         if(tile.entity != null){
             tile.entity.health = health;
+            tile.entity.markSyncDirty();
 
             if(tile.entity.damaged()){
                 indexer.notifyTileDamaged(tile.entity);
@@ -97,7 +106,7 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     public void sleep(){
         sleepTime += Time.delta();
         if(!sleeping && sleepTime >= timeToSleep){
-            remove();
+            tileUpdates.deactivate(this);
             sleeping = true;
             sleepingEntities++;
         }
@@ -107,12 +116,33 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
     public void noSleep(){
         sleepTime = 0f;
         if(sleeping){
-            add();
+            if(isAdded()){
+                tileUpdates.activate(this);
+            }
             sleeping = false;
             sleepingEntities--;
         }
     }
 
+    /** Marks this entity as changed, so it is sent in the next block snapshot. Changes to item, liquid and power modules are tracked automatically. */
+    public void markSyncDirty(){
+        syncDirty = true;
+    }
+
+    /** @return whether this entity changed since it was last sent in a block snapshot. */
+    public boolean isSyncDirty(){
+        return syncDirty || (items != null && items.version() != syncedItems) || (liquids != null && liquids.version() != syncedLiquids) || (power != null && power.version() != syncedPower);
+    }
+
+    /** Called after this entity was sent in a block snapshot. */
+    public void clearSyncDirty(){
+        syncDirty = false;
+        syncedItems = items == null ? -1 : items.version();
+        syncedLiquids = liquids == null ? -1 : liquids.version();
+        syncedPower = power == null ? -1 : power.version();
+    }
+
+    /** @return whether this entity is not updated. Sleeping entities are still in the tile group. */
     public boolean isSleeping(){
         return sleeping;
     }
@@ -242,8 +272,17 @@ public class TileEntity extends BaseEntity implements TargetTrait, HealthTrait{
         return 0;
     }
 
+    @Override
+    public void added(){
+        if(!sleeping){
+            tileUpdates.activate(this);
+        }
+    }
+
     @Override
     public void removed(){
+        tileUpdates.deactivate(this);
+
         if(sound != null){
             sound.stop();
         }
@@ -143,13 +143,44 @@ public abstract class Unit extends DestructibleEntity implements SaveTrait, Targ
 
     @Override
     public void readSave(DataInput stream, byte version) throws IOException{
-        byte team = stream.readByte();
-        boolean dead = stream.readBoolean();
-        float x = stream.readFloat();
-        float y = stream.readFloat();
+        readState(stream, version, false);
+    }
+
+    public void writeSave(DataOutput stream, boolean net) throws IOException{
+        writeState(stream, net, false);
+    }
+
+    /** Writes the state synced to clients, using the compact encoding if this unit {@link #isQuantized()}. */
+    public void writeSync(DataOutput stream) throws IOException{
+        writeState(stream, false, isQuantized());
+    }
+
+    /** Reads the state written by {@link #writeSync(DataOutput)}. */
+    public void readSync(DataInput stream, byte version) throws IOException{
+        readState(stream, version, isQuantized());
+    }
+
+    private void readState(DataInput stream, byte version, boolean quantized) throws IOException{
+        byte team;
+        boolean dead;
+        float x, y, rotation;
+
+        if(quantized){
+            byte flags = stream.readByte();
+            team = (byte)(flags & 0x7f);
+            dead = (flags & 0x80) != 0;
+            x = SyncIO.readX(stream);
+            y = SyncIO.readY(stream);
+        }else{
+            team = stream.readByte();
+            dead = stream.readBoolean();
+            x = stream.readFloat();
+            y = stream.readFloat();
+        }
+
         byte xv = stream.readByte();
         byte yv = stream.readByte();
-        float rotation = stream.readShort() / 2f;
+        rotation = quantized ? SyncIO.readAngle(stream) : stream.readShort() / 2f;
         int health = stream.readShort();
         byte itemID = stream.readByte();
         short itemAmount = stream.readShort();
@@ -166,16 +197,32 @@ public abstract class Unit extends DestructibleEntity implements SaveTrait, Targ
         this.rotation = rotation;
     }
 
-    public void writeSave(DataOutput stream, boolean net) throws IOException{
+    private void writeState(DataOutput stream, boolean net, boolean quantized) throws IOException{
         if(item.item == null) item.item = Items.copper;
 
-        stream.writeByte(team.ordinal());
-        stream.writeBoolean(isDead());
-        stream.writeFloat(net ? interpolator.target.x : x);
-        stream.writeFloat(net ? interpolator.target.y : y);
+        float x = net ? interpolator.target.x : this.x, y = net ? interpolator.target.y : this.y;
+
+        if(quantized){
+            //pack team and death state into one byte
+            stream.writeByte(team.ordinal() | (Pack.byteValue(isDead()) << 7));
+            SyncIO.writeX(stream, x);
+            SyncIO.writeY(stream, y);
+        }else{
+            stream.writeByte(team.ordinal());
+            stream.writeBoolean(isDead());
+            stream.writeFloat(x);
+            stream.writeFloat(y);
+        }
+
         stream.writeByte((byte)(Mathf.clamp(velocity.x, -maxAbsVelocity, maxAbsVelocity) * velocityPercision));
         stream.writeByte((byte)(Mathf.clamp(velocity.y, -maxAbsVelocity, maxAbsVelocity) * velocityPercision));
-        stream.writeShort((short)(rotation * 2));
+
+        if(quantized){
+            SyncIO.writeAngle(stream, rotation);
+        }else{
+            stream.writeShort((short)(rotation * 2));
+        }
+
         stream.writeShort((short)health);
         stream.writeByte(item.item.id);
         stream.writeShort((short)item.amount);
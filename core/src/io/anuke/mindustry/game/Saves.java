@@ -25,8 +25,9 @@ public class Saves{
     private Array<SaveSlot> saves = new Array<>();
     private SaveSlot current;
     private AsyncExecutor previewExecutor = new AsyncExecutor(1);
+    private SaveJournal journal = new SaveJournal();
     private boolean saving;
-    private float time;
+    private float time, journalTime;
     private FileHandle zoneFile;
 
     private long totalPlaytime;
@@ -40,6 +41,7 @@ public class Saves{
                 totalPlaytime = 0;
                 lastTimestamp = 0;
                 current = null;
+                journal.detach();
             }
         });
     }
@@ -49,7 +51,7 @@ public class Saves{
         zoneFile = saveDirectory.child("-1.msav");
 
         for(FileHandle file : saveDirectory.list()){
-            if(!file.name().contains("backup") && SaveIO.isSaveValid(file)){
+            if(!file.name().contains("backup") && file.extension().equals(saveExtension) && SaveIO.isSaveValid(file)){
                 SaveSlot slot = new SaveSlot(file);
                 saves.add(slot);
                 slot.meta = SaveIO.getMeta(file);
@@ -74,22 +76,31 @@ public class Saves{
 
         if(!state.is(State.menu) && !state.gameOver && current != null && current.isAutosave() && !state.rules.tutorial){
             time += Time.delta();
+            journalTime += Time.delta();
+            int journalInterval = Core.settings.getInt("journalinterval");
+
             if(time > Core.settings.getInt("saveinterval") * 60){
                 saving = true;
 
                 Time.runTask(2f, () -> {
                     try{
-                        current.save();
+                        current.saveAsync(() -> saving = false);
                     }catch(Exception e){
                         e.printStackTrace();
+                        saving = false;
                     }
-                    saving = false;
                 });
 
                 time = 0;
+                journalTime = 0;
+            }else if(journalInterval > 0 && journalTime > journalInterval * 60 && !saving && journal.isActive()){
+                //only log changes between full saves
+                journal.append();
+                journalTime = 0;
             }
         }else{
             time = 0;
+            journalTime = 0;
         }
     }
 
@@ -163,6 +174,10 @@ public class Saves{
             try{
                 SaveIO.load(file);
                 meta = SaveIO.getMeta(file);
+                int replayed = journal.load(file, meta);
+                if(replayed > 0){
+                    Log.info("Replayed {0} journal segments of {1}.", replayed, file.name());
+                }
                 current = this;
                 totalPlaytime = meta.timePlayed;
                 savePreview();
@@ -176,6 +191,8 @@ public class Saves{
             long prev = totalPlaytime;
             totalPlaytime = time;
 
+            //the full save is not tagged with a journal, so changes are only journaled again after the next autosave
+            journal.detach();
             SaveIO.save(file);
             meta = SaveIO.getMeta(file);
             if(!state.is(State.menu)){
@@ -186,6 +203,22 @@ public class Saves{
             savePreview();
         }
 
+        /**
+         * Saves without blocking the main thread while the save is compressed and written.
+         * Changes made after this are appended to the journal of the new save.
+         * @param done called once the save is written, or failed to write.
+         */
+        public void saveAsync(Runnable done){
+            journal.snapshot(file, Core.settings.getBool("fastautosave") ? SaveCodec.lz4 : SaveCodec.deflate, () -> {
+                meta = SaveIO.getMeta(file);
+                savePreview();
+                done.run();
+            }, e -> {
+                Log.err(e);
+                done.run();
+            });
+        }
+
         private void savePreview(){
             if(Core.assets.isLoaded(loadPreviewFile().path())){
                 Core.assets.unload(loadPreviewFile().path());
@@ -311,6 +344,7 @@ public class Saves{
 
         public void delete(){
             file.delete();
+            SaveJournal.fileFor(file).delete();
             saves.removeValue(this, true);
             if(this == current){
                 current = null;
@@ -152,6 +152,7 @@ public abstract class InputHandler implements InputProcessor, GestureListener{
     public static void onTileConfig(Player player, Tile tile, int value){
         if(tile == null || !Units.canInteract(player, tile)) return;
         tile.block().configured(tile, player, value);
+        if(tile.entity != null) tile.entity.markSyncDirty();
         Core.app.post(() -> Events.fire(new TapConfigEvent(tile, player, value)));
     }
 
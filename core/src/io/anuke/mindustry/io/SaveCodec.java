@@ -0,0 +1,78 @@
+package io.anuke.mindustry.io;
+
+import io.anuke.arc.util.io.*;
+import net.jpountz.lz4.*;
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * Compression codecs for save regions and the map data sent to players. The ordinal of a codec is written to files and streams,
+ * so new codecs must only be added at the end.
+ */
+public enum SaveCodec{
+    /** Stores data as-is. */
+    none{
+        @Override
+        public byte[] compress(byte[] bytes, int offset, int length){
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, offset, result, 0, length);
+            return result;
+        }
+
+        @Override
+        public byte[] decompress(byte[] bytes, int rawLength){
+            return bytes;
+        }
+    },
+    /** Zlib deflate; the smallest output, and the format of saves written before codecs existed. */
+    deflate{
+        @Override
+        public byte[] compress(byte[] bytes, int offset, int length) throws IOException{
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try(OutputStream stream = new FastDeflaterOutputStream(output)){
+                stream.write(bytes, offset, length);
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] bytes, int rawLength) throws IOException{
+            byte[] result = new byte[rawLength];
+            try(DataInputStream stream = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))){
+                stream.readFully(result);
+            }
+            return result;
+        }
+    },
+    /** LZ4 blocks; larger than deflate, but much faster to encode and decode. */
+    lz4{
+        @Override
+        public byte[] compress(byte[] bytes, int offset, int length){
+            return LZ4Factory.fastestInstance().fastCompressor().compress(bytes, offset, length);
+        }
+
+        @Override
+        public byte[] decompress(byte[] bytes, int rawLength) throws IOException{
+            try{
+                return LZ4Factory.fastestInstance().fastDecompressor().decompress(bytes, rawLength);
+            }catch(LZ4Exception e){
+                throw new IOException(e);
+            }
+        }
+    };
+
+    public static final SaveCodec[] all = values();
+
+    /** @return compressed bytes of a range of data. */
+    public abstract byte[] compress(byte[] bytes, int offset, int length) throws IOException;
+
+    /** @return the data of some compressed bytes, which must decompress to exactly rawLength bytes. */
+    public abstract byte[] decompress(byte[] bytes, int rawLength) throws IOException;
+
+    /** @return the codec with this ordinal. */
+    public static SaveCodec get(int id) throws IOException{
+        if(id < 0 || id >= all.length) throw new IOException("Unknown compression codec: " + id);
+        return all[id];
+    }
+}
@@ -0,0 +1,178 @@
+package io.anuke.mindustry.io;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.files.*;
+import io.anuke.arc.util.*;
+import io.anuke.arc.util.io.*;
+
+import java.io.*;
+import java.util.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Random-access file format for saves and maps. A small uncompressed table lists the offsets of the regions of the save,
+ * so one region can be read without inflating the ones before it, e.g. only the meta region when listing saves.
+ * Each region is compressed on its own with a {@link SaveCodec}; regions that are already compressed by their {@link SaveVersion} are stored as-is.
+ * <p>
+ * Layout: the {@link #header}, the save version, the amount of regions, the region table, then the region data.
+ * Each table entry holds the name of a region, the ID of its codec, its offset after the table, its stored length and its raw length.
+ * <p>
+ * Saves written before this format are one deflated stream of the sequential layout read by {@link SaveVersion}; those never start with {@link #header}.
+ */
+public class SaveContainer{
+    /** Container header. This is the string 'MSAC' in ASCII. */
+    public static final byte[] header = {77, 83, 65, 67};
+
+    public final int version;
+    public final Array<Region> regions = new Array<>();
+
+    private final FileHandle file;
+    private final int dataOffset;
+
+    private SaveContainer(FileHandle file) throws IOException{
+        this.file = file;
+
+        try(CounterInputStream counter = new CounterInputStream(file.read(bufferSize)); DataInputStream stream = new DataInputStream(counter)){
+            readHeader(stream);
+            version = stream.readInt();
+            int amount = stream.readUnsignedByte();
+            for(int i = 0; i < amount; i++){
+                regions.add(new Region(stream.readUTF(), SaveCodec.get(stream.readUnsignedByte()), stream.readInt(), stream.readInt(), stream.readInt()));
+            }
+            dataOffset = counter.count();
+        }
+    }
+
+    /** Reads the region table of a container file. */
+    public static SaveContainer read(FileHandle file) throws IOException{
+        return new SaveContainer(file);
+    }
+
+    /** @return whether this file is a container, as opposed to a save written in the legacy format. */
+    public static boolean isContainer(FileHandle file){
+        try(InputStream stream = file.read(32)){
+            for(byte b : header){
+                if(stream.read() != b){
+                    return false;
+                }
+            }
+            return true;
+        }catch(Exception e){
+            return false;
+        }
+    }
+
+    /**
+     * Opens some regions in the sequential layout read by {@link SaveVersion}, including the save header and version.
+     * Only the listed regions are read and decompressed; the others are skipped.
+     * @param names the regions to open, or none to open all regions. Regions are always returned in the order they are stored in.
+     */
+    public InputStream open(String... names) throws IOException{
+        Vector<InputStream> streams = new Vector<>();
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+        DataOutputStream prefixData = new DataOutputStream(prefix);
+        prefixData.write(SaveIO.header);
+        prefixData.writeInt(version);
+
+        try(DataInputStream stream = new DataInputStream(file.read(bufferSize))){
+            skip(stream, dataOffset);
+            int position = 0;
+
+            for(Region region : regions){
+                if(names.length > 0 && !Structs.contains(names, region.name::equals)) continue;
+
+                skip(stream, region.offset - position);
+                byte[] data = new byte[region.length];
+                stream.readFully(data);
+                position = region.offset + region.length;
+
+                prefixData.writeInt(region.rawLength);
+                streams.add(new ByteArrayInputStream(prefix.toByteArray()));
+                streams.add(new ByteArrayInputStream(region.codec.decompress(data, region.rawLength)));
+                prefix.reset();
+            }
+        }
+
+        streams.add(new ByteArrayInputStream(prefix.toByteArray()));
+        return new SequenceInputStream(streams.elements());
+    }
+
+    /**
+     * Splits an uncompressed save in the sequential layout written by {@link SaveIO#write(OutputStream, StringMap)} into its regions,
+     * and writes them as a container.
+     * @param codec codec of the regions that are not already compressed.
+     */
+    public static void write(OutputStream output, byte[] save, SaveCodec codec) throws IOException{
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(save));
+        SaveIO.readHeader(input);
+        int version = input.readInt();
+        SaveVersion writer = SaveIO.getSaveWriter(version);
+
+        Array<Region> regions = new Array<>();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        for(int i = 0; input.available() > 0; i++){
+            String name = i < SaveVersion.regionNames.length ? SaveVersion.regionNames[i] : "region" + i;
+            int rawLength = input.readInt();
+            int rawOffset = save.length - input.available();
+            SaveCodec regionCodec = writer.isPrecompressed(name) ? SaveCodec.none : codec;
+            int offset = data.size();
+
+            if(regionCodec == SaveCodec.none){
+                data.write(save, rawOffset, rawLength);
+            }else{
+                data.write(regionCodec.compress(save, rawOffset, rawLength));
+            }
+
+            regions.add(new Region(name, regionCodec, offset, data.size() - offset, rawLength));
+            input.skipBytes(rawLength);
+        }
+
+        DataOutputStream stream = new DataOutputStream(output);
+        stream.write(header);
+        stream.writeInt(version);
+        stream.writeByte(regions.size);
+        for(Region region : regions){
+            stream.writeUTF(region.name);
+            stream.writeByte(region.codec.ordinal());
+            stream.writeInt(region.offset);
+            stream.writeInt(region.length);
+            stream.writeInt(region.rawLength);
+        }
+        data.writeTo(stream);
+        stream.flush();
+    }
+
+    private static void readHeader(DataInput input) throws IOException{
+        byte[] bytes = new byte[header.length];
+        input.readFully(bytes);
+        if(!Arrays.equals(bytes, header)){
+            throw new IOException("Incorrect header! Expecting: " + Arrays.toString(header) + "; Actual: " + Arrays.toString(bytes));
+        }
+    }
+
+    private static void skip(DataInputStream stream, int bytes) throws IOException{
+        if(stream.skipBytes(bytes) != bytes){
+            throw new EOFException("Could not skip " + bytes + " bytes.");
+        }
+    }
+
+    /** An entry of the region table. */
+    public static class Region{
+        public final String name;
+        public final SaveCodec codec;
+        /** Offset of the region data after the region table. */
+        public final int offset;
+        /** Length of the stored and raw region data. */
+        public final int length, rawLength;
+
+        Region(String name, SaveCodec codec, int offset, int length, int rawLength){
+            this.name = name;
+            this.codec = codec;
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package io.anuke.mindustry.io;
 
+import io.anuke.arc.*;
 import io.anuke.arc.collection.*;
 import io.anuke.arc.files.FileHandle;
+import io.anuke.arc.func.Cons;
+import io.anuke.arc.util.*;
+import io.anuke.arc.util.async.AsyncExecutor;
 import io.anuke.arc.util.io.CounterInputStream;
-import io.anuke.arc.util.io.FastDeflaterOutputStream;
 import io.anuke.mindustry.Vars;
 import io.anuke.mindustry.io.versions.*;
 import io.anuke.mindustry.world.WorldContext;
@@ -18,7 +21,9 @@ public class SaveIO{
     /** Format header. This is the string 'MSAV' in ASCII. */
     public static final byte[] header = {77, 83, 65, 86};
     public static final IntMap<SaveVersion> versions = new IntMap<>();
-    public static final Array<SaveVersion> versionArray = Array.with(new Save1(), new Save2(), new Save3());
+    public static final Array<SaveVersion> versionArray = Array.with(new Save1(), new Save2(), new Save3(), new Save4());
+    /** Compresses and writes saves made with {@link #saveAsync(FileHandle, Runnable, Cons)} and {@link #save(FileHandle)}, and journal segments, one at a time. */
+    static final AsyncExecutor saveExecutor = new AsyncExecutor(1);
 
     static{
         for(SaveVersion version : versionArray){
@@ -34,28 +39,100 @@ public class SaveIO{
         return versions.get(version);
     }
 
+    /**
+     * Saves to a file and waits until it is written. The save is written on the save thread,
+     * so it is ordered after pending asynchronous saves and journal segments instead of racing their file moves.
+     */
     public static void save(FileHandle file){
-        boolean exists = file.exists();
-        if(exists) file.moveTo(backupFileFor(file));
-        try{
-            write(file);
-        }catch(Exception e){
-            if(exists) backupFileFor(file).moveTo(file);
-            throw new RuntimeException(e);
-        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, null, SaveCodec.deflate);
+
+        saveExecutor.submit(() -> {
+            boolean exists = file.exists();
+            if(exists) file.moveTo(backupFileFor(file));
+            try(OutputStream output = file.write(false, bufferSize)){
+                SaveContainer.write(output, bytes.toByteArray(), SaveCodec.deflate);
+            }catch(Exception e){
+                if(exists) backupFileFor(file).moveTo(file);
+                throw new RuntimeException(e);
+            }
+            return null;
+        }).get();
+    }
+
+    /** Waits until all pending asynchronous saves and journal segments are written. */
+    public static void awaitWrites(){
+        saveExecutor.submit(() -> null).get();
+    }
+
+    /**
+     * Saves to a file without blocking the main thread while the save is compressed and written.
+     * The game state is serialized into memory first, which must happen on the main thread between updates.
+     * Compression and file writes happen on a separate thread; the previous save is only replaced once the new one is fully written.
+     * @param done called on the main thread once the save is written.
+     * @param failed called on the main thread if writing the save failed.
+     */
+    public static void saveAsync(FileHandle file, Runnable done, Cons<Throwable> failed){
+        saveAsync(file, SaveCodec.deflate, done, failed);
     }
 
-    public static DataInputStream getStream(FileHandle file){
-        return new DataInputStream(new InflaterInputStream(file.read(bufferSize)));
+    /** @param codec codec used to compress the save. */
+    public static void saveAsync(FileHandle file, SaveCodec codec, Runnable done, Cons<Throwable> failed){
+        saveAsync(file, codec, null, null, done, failed);
     }
 
-    public static DataInputStream getBackupStream(FileHandle file){
-        return new DataInputStream(new InflaterInputStream(backupFileFor(file).read(bufferSize)));
+    /**
+     * @param tags extra meta tags, or null.
+     * @param written run on the save thread once the save replaced the previous one, or null.
+     */
+    static void saveAsync(FileHandle file, SaveCodec codec, StringMap tags, Runnable written, Runnable done, Cons<Throwable> failed){
+        long start = Time.nanos();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, tags, codec);
+        float pause = Time.timeSinceNanos(start) / 1000000f;
+        int width = world.width(), height = world.height();
+
+        saveExecutor.submit(() -> {
+            try{
+                FileHandle temp = tempFileFor(file);
+                try(OutputStream output = temp.write(false, bufferSize)){
+                    SaveContainer.write(output, bytes.toByteArray(), codec);
+                }
+
+                if(file.exists()) file.moveTo(backupFileFor(file));
+                temp.moveTo(file);
+                if(written != null) written.run();
+
+                Log.debug("Saved {0} ({1}x{2}, {3}): main thread paused for {4} ms, written in {5} ms.", file.name(), width, height, codec, Strings.fixed(pause, 2), Strings.fixed(Time.timeSinceNanos(start) / 1000000f, 2));
+                Core.app.post(done);
+            }catch(Throwable e){
+                Core.app.post(() -> failed.get(e));
+            }
+        });
+    }
+
+    /**
+     * Opens a save or map file of either format as an uncompressed stream, in the sequential layout read by {@link SaveVersion}.
+     * @param regions the regions that will be read. Other regions of a {@link SaveContainer} are skipped without being inflated.
+     */
+    public static DataInputStream getStream(FileHandle file, String... regions){
+        try{
+            if(SaveContainer.isContainer(file)){
+                return new DataInputStream(SaveContainer.read(file).open(regions));
+            }
+            return new DataInputStream(new InflaterInputStream(file.read(bufferSize)));
+        }catch(IOException e){
+            throw new SaveException(e);
+        }
+    }
+
+    public static DataInputStream getBackupStream(FileHandle file, String... regions){
+        return getStream(backupFileFor(file), regions);
     }
 
     public static boolean isSaveValid(FileHandle file){
         try{
-            return isSaveValid(new DataInputStream(new InflaterInputStream(file.read(bufferSize))));
+            return isSaveValid(getStream(file, "meta"));
         }catch(Exception e){
             return false;
         }
@@ -73,9 +150,9 @@ public class SaveIO{
 
     public static SaveMeta getMeta(FileHandle file){
         try{
-            return getMeta(getStream(file));
+            return getMeta(getStream(file, "meta"));
         }catch(Exception e){
-            return getMeta(getBackupStream(file));
+            return getMeta(getBackupStream(file, "meta"));
         }
     }
 
@@ -100,8 +177,23 @@ public class SaveIO{
         return file.sibling(file.name() + "-backup." + file.extension());
     }
 
+    /** @return the file a save is written to before it replaces the previous one. */
+    public static FileHandle tempFileFor(FileHandle file){
+        return file.sibling(file.name() + ".tmp");
+    }
+
     public static void write(FileHandle file, StringMap tags){
-        write(new FastDeflaterOutputStream(file.write(false, bufferSize)), tags);
+        write(file, tags, SaveCodec.deflate);
+    }
+
+    public static void write(FileHandle file, StringMap tags, SaveCodec codec){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, tags, codec);
+        try(OutputStream output = file.write(false, bufferSize)){
+            SaveContainer.write(output, bytes.toByteArray(), codec);
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
     }
 
     public static void write(FileHandle file){
@@ -109,14 +201,18 @@ public class SaveIO{
     }
 
     public static void write(OutputStream os, StringMap tags){
+        write(os, tags, SaveCodec.deflate);
+    }
+
+    /**
+     * Writes an uncompressed save in the sequential layout. Versions that compress data within regions compress it with the codec.
+     * @param tags extra meta tags, or null.
+     */
+    public static void write(OutputStream os, StringMap tags, SaveCodec codec){
         try(DataOutputStream stream = new DataOutputStream(os)){
             stream.write(header);
             stream.writeInt(getVersion().version);
-            if(tags == null){
-                getVersion().write(stream);
-            }else{
-                getVersion().write(stream, tags);
-            }
+            getVersion().write(stream, tags == null ? new StringMap() : tags, codec);
         }catch(Exception e){
             throw new RuntimeException(e);
         }
@@ -127,21 +223,24 @@ public class SaveIO{
     }
 
     public static void load(FileHandle file, WorldContext context) throws SaveException{
+        //a save that is still being written would be read while it is moved
+        awaitWrites();
+
         try{
             //try and load; if any exception at all occurs
-            load(new InflaterInputStream(file.read(bufferSize)), context);
+            load(getStream(file), context);
         }catch(SaveException e){
             e.printStackTrace();
             FileHandle backup = file.sibling(file.name() + "-backup." + file.extension());
             if(backup.exists()){
-                load(new InflaterInputStream(backup.read(bufferSize)), context);
+                load(getStream(backup), context);
             }else{
                 throw new SaveException(e.getCause());
             }
         }
     }
 
-    /** Loads from a deflated (!) input stream.*/
+    /** Loads from an inflated input stream in the sequential layout, see {@link #getStream(FileHandle, String...)}. */
     public static void load(InputStream is, WorldContext context) throws SaveException{
         try(CounterInputStream counter = new CounterInputStream(is); DataInputStream stream = new DataInputStream(counter)){
             logic.reset();
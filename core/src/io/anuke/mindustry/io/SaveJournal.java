@@ -0,0 +1,264 @@
+package io.anuke.mindustry.io;
+
+import io.anuke.arc.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.files.*;
+import io.anuke.arc.func.*;
+import io.anuke.arc.util.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.mindustry.core.*;
+import io.anuke.mindustry.entities.*;
+import io.anuke.mindustry.entities.traits.*;
+import io.anuke.mindustry.game.*;
+import io.anuke.mindustry.game.EventType.*;
+import io.anuke.mindustry.game.Teams.*;
+import io.anuke.mindustry.net.*;
+import io.anuke.mindustry.world.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Append-only log of the changes made to the world since the last full save of a slot, so the world can be saved often without rewriting it.
+ * Each segment holds the wave state, the state of tiles that were changed or configured since the last segment and the state of all cores.
+ * As saved entities can not be matched between saves, all of them are written, but only every {@link #entityInterval} or when the wave changed,
+ * so most segments only hold tiles. Tile entities that were not changed or configured are only updated by the next full save.
+ * <p>
+ * A full save tags its meta with the ID of a new journal, which is started once the save is written. Loading a save replays
+ * the segments of its journal, stopping at the first segment that was not fully written, which is cut off so later segments can be appended.
+ */
+public class SaveJournal{
+    /** Journal header. This is the string 'MSJR' in ASCII. */
+    public static final byte[] header = {77, 83, 74, 82};
+    /** Offset of the snapshot ID in the journal, after the header, build and save version. */
+    public static final int snapshotOffset = header.length + 8;
+    /** Offset of the first segment in the journal. */
+    public static final int segmentsOffset = snapshotOffset + 8;
+    /** Size of the length and checksum written before the data of a segment. */
+    public static final int segmentHeaderSize = 12;
+    /** Offset of the flag that marks segments holding entities in the data of a segment, after the wave state. */
+    public static final int entityFlagOffset = 8;
+    /** Minimum time between segments that hold the saved entities, in milliseconds. */
+    private static final long entityInterval = 30 * 1000;
+
+    private final IntSet changes = new IntSet();
+    private @Nullable FileHandle file;
+    private long id;
+    /** when the saved entities were last written, and the wave at that time */
+    private long entityTime;
+    private int entityWave;
+
+    public SaveJournal(){
+        Events.on(TileChangeEvent.class, event -> changed(event.tile));
+        Events.on(TapConfigEvent.class, event -> changed(event.tile));
+    }
+
+    /** @return the journal file of a save. */
+    public static FileHandle fileFor(FileHandle save){
+        return save.sibling(save.name() + ".journal");
+    }
+
+    /** @return whether segments can be appended, which requires a full save tagged with this journal. */
+    public boolean isActive(){
+        return file != null;
+    }
+
+    /**
+     * Writes a full save without blocking the main thread, and starts a new journal for it once it is written.
+     * Changes made after this call are appended to the new journal.
+     */
+    public void snapshot(FileHandle save, SaveCodec codec, Runnable done, Cons<Throwable> failed){
+        long snapshot = Time.millis();
+        FileHandle journal = fileFor(save);
+        attach(journal, snapshot);
+
+        SaveIO.saveAsync(save, codec, StringMap.of("journal", snapshot), () -> {
+            try(DataOutputStream stream = new DataOutputStream(journal.write(false, bufferSize))){
+                stream.write(header);
+                stream.writeInt(Version.build);
+                stream.writeInt(SaveIO.getVersion().version);
+                stream.writeLong(snapshot);
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+        }, done, e -> {
+            //the save and its journal are unchanged, so later changes can not be appended until the next full save
+            if(id == snapshot) detach();
+            failed.get(e);
+        });
+    }
+
+    /** Appends the changes since the last segment. The segment is serialized on the main thread and written on the save thread. */
+    public void append(){
+        if(file == null) return;
+
+        long start = Time.nanos();
+        FileHandle journal = file;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        //units spawned or killed by a wave would not match the wave state, so entities are always written when it changes
+        boolean writeEntities = Time.timeSinceMillis(entityTime) >= entityInterval || state.wave != entityWave;
+
+        try(DataOutputStream stream = new DataOutputStream(bytes)){
+            for(TeamData data : state.teams.getActive()){
+                for(Tile core : data.cores){
+                    changes.add(core.pos());
+                }
+            }
+
+            //the entity flag is at entityFlagOffset
+            stream.writeInt(state.wave);
+            stream.writeFloat(state.wavetime);
+            stream.writeBoolean(writeEntities);
+            NetworkIO.writeTiles(stream, changes);
+            if(writeEntities){
+                SaveIO.getVersion().writeEntities(stream);
+                entityTime = Time.millis();
+                entityWave = state.wave;
+            }
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+
+        int tiles = changes.size;
+        changes.clear();
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        long checksum = crc.getValue();
+
+        SaveIO.saveExecutor.submit(() -> {
+            try(DataOutputStream stream = new DataOutputStream(journal.write(true, bufferSize))){
+                stream.writeInt(data.length);
+                stream.writeLong(checksum);
+                stream.write(data);
+            }catch(IOException e){
+                Log.err(e);
+            }
+        });
+
+        Log.debug("Journaled {0} tiles{1} in {2} bytes: main thread paused for {3} ms.", tiles, writeEntities ? " and all entities" : "", data.length, Strings.fixed(Time.timeSinceNanos(start) / 1000000f, 2));
+    }
+
+    /**
+     * Replays the journal of a save that was just loaded, and continues the journal for later changes.
+     * Journals of another full save or another build are ignored.
+     * @return the amount of segments replayed.
+     */
+    public int load(FileHandle save, SaveMeta meta) throws IOException{
+        detach();
+
+        FileHandle journal = fileFor(save);
+        long snapshot = meta.tags.getLong("journal", 0);
+        if(snapshot == 0 || !journal.exists()) return 0;
+
+        Array<byte[]> segments = new Array<>();
+        long end = segmentsOffset;
+
+        try(DataInputStream stream = new DataInputStream(journal.read(bufferSize))){
+            byte[] bytes = new byte[header.length];
+            stream.readFully(bytes);
+            if(!Arrays.equals(bytes, header) || stream.readInt() != Version.build || stream.readInt() != SaveIO.getVersion().version || stream.readLong() != snapshot){
+                return 0;
+            }
+
+            for(byte[] segment; (segment = readSegment(stream, journal.length() - end)) != null; ){
+                segments.add(segment);
+                end += segmentHeaderSize + segment.length;
+            }
+        }catch(EOFException e){
+            //the journal header was not fully written
+            return 0;
+        }
+
+        //cut off a segment that was not fully written before a crash, so segments appended from now on can be read
+        if(journal.length() > end){
+            try(RandomAccessFile access = new RandomAccessFile(journal.file(), "rw")){
+                access.setLength(end);
+            }
+        }
+
+        //only the entity state of the last segment that holds entities is current
+        int entitySegment = -1;
+        for(int i = 0; i < segments.size; i++){
+            if(segments.get(i)[entityFlagOffset] != 0) entitySegment = i;
+        }
+
+        for(int i = 0; i < segments.size; i++){
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(segments.get(i)));
+            state.wave = in.readInt();
+            state.wavetime = in.readFloat();
+            in.readBoolean();
+            NetworkIO.readTiles(in);
+
+            if(i == entitySegment){
+                replaceEntities(in);
+            }
+        }
+
+        attach(journal, snapshot);
+        return segments.size;
+    }
+
+    /** Stops journaling, until the next full save or load. */
+    public void detach(){
+        file = null;
+        id = 0;
+        changes.clear();
+    }
+
+    private void attach(FileHandle journal, long snapshot){
+        file = journal;
+        id = snapshot;
+        changes.clear();
+        //the full save or the replayed journal holds the current entities
+        entityTime = Time.millis();
+        entityWave = state.wave;
+    }
+
+    private void changed(Tile tile){
+        if(file != null){
+            changes.add(tile.pos());
+        }
+    }
+
+    private void replaceEntities(DataInputStream stream) throws IOException{
+        for(Team team : Team.all){
+            state.teams.get(team).brokenBlocks.clear();
+        }
+
+        //the local player is kept, and its saved state is read into it
+        for(EntityGroup<?> group : entities.all()){
+            //entities loaded from the full save are only in the group after its events are processed
+            group.updateEvents();
+            if(group != playerGroup && !group.isEmpty() && group.all().get(0) instanceof SaveTrait){
+                group.clear();
+            }
+        }
+
+        SaveIO.getVersion().readEntities(stream);
+    }
+
+    /**
+     * @param remaining amount of bytes left in the journal.
+     * @return the next segment, or null if there are no more fully written segments.
+     */
+    private static @Nullable byte[] readSegment(DataInputStream stream, long remaining) throws IOException{
+        try{
+            int length = stream.readInt();
+            long checksum = stream.readLong();
+            if(length < 0 || length > remaining - segmentHeaderSize) return null;
+
+            byte[] data = new byte[length];
+            stream.readFully(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return crc.getValue() == checksum ? data : null;
+        }catch(EOFException e){
+            return null;
+        }
+    }
+}
@@ -19,7 +19,12 @@ import java.io.*;
 import static io.anuke.mindustry.Vars.*;
 
 public abstract class SaveVersion extends SaveFileReader{
+    /** Names of the regions of a save, in the order they are written. */
+    public static final String[] regionNames = {"meta", "content", "map", "entities"};
+
     public int version;
+    /** Codec for data that is compressed within regions, by versions that do so; set while writing. */
+    protected SaveCodec codec = SaveCodec.deflate;
 
     //HACK stores the last read build of the save file, valid after read meta call
     protected int lastReadBuild;
@@ -28,6 +33,11 @@ public abstract class SaveVersion extends SaveFileReader{
         this.version = version;
     }
 
+    /** @return whether the data of this region is already compressed, so a {@link SaveContainer} stores it as-is. */
+    public boolean isPrecompressed(String region){
+        return false;
+    }
+
     public SaveMeta getMeta(DataInput stream) throws IOException{
         stream.readInt(); //length of data, doesn't matter here
         StringMap map = readStringMap(stream);
@@ -52,6 +62,28 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
+    /** Writes a save, compressing data within regions with a codec. */
+    public final void write(DataOutputStream stream, StringMap extraTags, SaveCodec codec) throws IOException{
+        SaveCodec last = this.codec;
+        this.codec = codec;
+        try{
+            write(stream, extraTags);
+        }finally{
+            this.codec = last;
+        }
+    }
+
+    /** Writes the map region, compressing data within it with a codec. */
+    public final void writeMap(DataOutput stream, SaveCodec codec) throws IOException{
+        SaveCodec last = this.codec;
+        this.codec = codec;
+        try{
+            writeMap(stream);
+        }finally{
+            this.codec = last;
+        }
+    }
+
     public final void write(DataOutputStream stream, StringMap extraTags) throws IOException{
         region("meta", stream, out -> writeMeta(out, extraTags));
         region("content", stream, this::writeContentHeader);
@@ -214,19 +246,7 @@ public abstract class SaveVersion extends SaveFileReader{
 
     public void writeEntities(DataOutput stream) throws IOException{
         //write team data with entities.
-        Array<TeamData> data = state.teams.getActive();
-        stream.writeInt(data.size);
-        for(TeamData team : data){
-            stream.writeInt(team.team.ordinal());
-            stream.writeInt(team.brokenBlocks.size);
-            for(BrokenBlock block : team.brokenBlocks){
-                stream.writeShort(block.x);
-                stream.writeShort(block.y);
-                stream.writeShort(block.rotation);
-                stream.writeShort(block.block);
-                stream.writeInt(block.config);
-            }
-        }
+        writeTeamBlocks(stream);
 
         //write entity chunk
         int groups = 0;
@@ -255,16 +275,25 @@ public abstract class SaveVersion extends SaveFileReader{
         }
     }
 
-    public void readEntities(DataInput stream) throws IOException{
-        int teamc = stream.readInt();
-        for(int i = 0; i < teamc; i++){
-            Team team = Team.all[stream.readInt()];
-            TeamData data = state.teams.get(team);
-            int blocks = stream.readInt();
-            for(int j = 0; j < blocks; j++){
-                data.brokenBlocks.addLast(new BrokenBlock(stream.readShort(), stream.readShort(), stream.readShort(), content.block(stream.readShort()).id, stream.readInt()));
+    /** Writes the broken blocks of each active team. */
+    protected void writeTeamBlocks(DataOutput stream) throws IOException{
+        Array<TeamData> data = state.teams.getActive();
+        stream.writeInt(data.size);
+        for(TeamData team : data){
+            stream.writeInt(team.team.ordinal());
+            stream.writeInt(team.brokenBlocks.size);
+            for(BrokenBlock block : team.brokenBlocks){
+                stream.writeShort(block.x);
+                stream.writeShort(block.y);
+                stream.writeShort(block.rotation);
+                stream.writeShort(block.block);
+                stream.writeInt(block.config);
             }
         }
+    }
+
+    public void readEntities(DataInput stream) throws IOException{
+        readTeamBlocks(stream);
 
         byte groups = stream.readByte();
 
@@ -272,12 +301,28 @@ public abstract class SaveVersion extends SaveFileReader{
             int amount = stream.readInt();
             for(int j = 0; j < amount; j++){
                 //TODO throw exception on read fail
-                readChunk(stream, true, in -> {
-                    byte typeid = in.readByte();
-                    byte version = in.readByte();
-                    SaveTrait trait = (SaveTrait)content.<TypeID>getByID(ContentType.typeid, typeid).constructor.get();
-                    trait.readSave(in, version);
-                });
+                readChunk(stream, true, this::readEntity);
+            }
+        }
+    }
+
+    /** Reads one entity written as a chunk, and adds it. */
+    protected void readEntity(DataInput stream) throws IOException{
+        byte typeid = stream.readByte();
+        byte version = stream.readByte();
+        SaveTrait trait = (SaveTrait)content.<TypeID>getByID(ContentType.typeid, typeid).constructor.get();
+        trait.readSave(stream, version);
+    }
+
+    /** Reads the broken blocks of each team. */
+    protected void readTeamBlocks(DataInput stream) throws IOException{
+        int teamc = stream.readInt();
+        for(int i = 0; i < teamc; i++){
+            Team team = Team.all[stream.readInt()];
+            TeamData data = state.teams.get(team);
+            int blocks = stream.readInt();
+            for(int j = 0; j < blocks; j++){
+                data.brokenBlocks.addLast(new BrokenBlock(stream.readShort(), stream.readShort(), stream.readShort(), content.block(stream.readShort()).id, stream.readInt()));
             }
         }
     }
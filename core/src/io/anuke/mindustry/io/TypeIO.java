@@ -330,6 +330,23 @@ public class TypeIO{
         return bytes;
     }
 
+    /** Writes the bytes between the position and limit of a heap buffer, without modifying it, so it can be written again. */
+    @WriteClass(ByteBuffer.class)
+    public static void writeByteBuffer(ByteBuffer buffer, ByteBuffer bytes){
+        buffer.putShort((short)bytes.remaining());
+        buffer.put(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    }
+
+    /** Reads bytes as a view of the packet buffer, without copying them. The view is only valid while the packet is being handled. */
+    @ReadClass(ByteBuffer.class)
+    public static ByteBuffer readByteBuffer(ByteBuffer buffer){
+        short length = buffer.getShort();
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return bytes;
+    }
+
     @WriteClass(TraceInfo.class)
     public static void writeTraceInfo(ByteBuffer buffer, TraceInfo trace){
         writeString(buffer, trace.ip);
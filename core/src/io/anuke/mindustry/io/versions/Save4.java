@@ -0,0 +1,330 @@
+package io.anuke.mindustry.io.versions;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.util.io.*;
+import io.anuke.mindustry.content.*;
+import io.anuke.mindustry.entities.*;
+import io.anuke.mindustry.entities.traits.*;
+import io.anuke.mindustry.io.*;
+import io.anuke.mindustry.world.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Splits the map and entity regions into independently compressed chunks, which are encoded and decoded on a worker pool.
+ * Each region starts with the ID of the {@link SaveCodec} of its chunks and an index of the raw and compressed chunk sizes, followed by the compressed chunks.
+ * Decoded chunks are applied to the world in order on the calling thread, as creating tiles and entities is not thread-safe.
+ */
+public class Save4 extends SaveVersion{
+    /** Approximate amount of tiles in one map chunk; the map is split into bands of whole rows. */
+    private static final int chunkTiles = 64 * 1024;
+    /** Amount of entities in one entity chunk. */
+    private static final int chunkEntities = 512;
+
+    private static ExecutorService executor;
+
+    public Save4(){
+        super(4);
+    }
+
+    @Override
+    public boolean isPrecompressed(String region){
+        return region.equals("map") || region.equals("entities");
+    }
+
+    @Override
+    public void writeMap(DataOutput stream) throws IOException{
+        int width = world.width(), height = world.height();
+        int rows = Math.max(chunkTiles / Math.max(width, 1), 1);
+
+        stream.writeShort(width);
+        stream.writeShort(height);
+        stream.writeShort(rows);
+
+        writeChunks(stream, (height + rows - 1) / rows, (i, out) -> writeTiles(out, i * rows * width, Math.min((i + 1) * rows, height) * width));
+    }
+
+    @Override
+    public void readMap(DataInput stream, WorldContext context) throws IOException{
+        int width = stream.readUnsignedShort();
+        int height = stream.readUnsignedShort();
+        int rows = stream.readUnsignedShort();
+
+        DataInputStream[] chunks = readChunks(stream);
+
+        boolean generating = context.isGenerating();
+
+        if(!generating) context.begin();
+        try{
+            context.resize(width, height);
+
+            //create all tiles before placing blocks, as multiblocks may span several chunks
+            for(int i = 0; i < chunks.length; i++){
+                readFloors(chunks[i], context, width, i * rows * width, Math.min((i + 1) * rows, height) * width);
+            }
+
+            for(int i = 0; i < chunks.length; i++){
+                readBlocks(chunks[i], context, width, i * rows * width, Math.min((i + 1) * rows, height) * width);
+            }
+        }finally{
+            if(!generating) context.end();
+        }
+    }
+
+    @Override
+    public void writeEntities(DataOutput stream) throws IOException{
+        writeTeamBlocks(stream);
+
+        Array<EntityGroup<?>> groups = new Array<>();
+        for(EntityGroup<?> group : entities.all()){
+            if(!group.isEmpty() && group.all().get(0) instanceof SaveTrait){
+                groups.add(group);
+            }
+        }
+
+        //split each group into chunks; a chunk never contains entities of several groups
+        IntArray chunkGroups = new IntArray(), chunkStarts = new IntArray();
+        for(int i = 0; i < groups.size; i++){
+            for(int j = 0; j < groups.get(i).size(); j += chunkEntities){
+                chunkGroups.add(i);
+                chunkStarts.add(j);
+            }
+        }
+
+        writeChunks(stream, chunkGroups.size, (i, out) -> {
+            Array<? extends Entity> all = groups.get(chunkGroups.get(i)).all();
+            int from = chunkStarts.get(i), to = Math.min(from + chunkEntities, all.size);
+            ChunkOutput scratch = new ChunkOutput();
+
+            out.writeInt(to - from);
+            for(int j = from; j < to; j++){
+                SaveTrait save = (SaveTrait)all.get(j);
+                scratch.write(out, data -> {
+                    data.writeByte(save.getTypeID().id);
+                    data.writeByte(save.version());
+                    save.writeSave(data);
+                });
+            }
+        });
+    }
+
+    @Override
+    public void readEntities(DataInput stream) throws IOException{
+        readTeamBlocks(stream);
+
+        for(DataInputStream chunk : readChunks(stream)){
+            int amount = chunk.readInt();
+            for(int i = 0; i < amount; i++){
+                readChunk(chunk, true, this::readEntity);
+            }
+        }
+    }
+
+    /** Writes the floors and then the blocks of the tiles in [from, to). Runs never cross the chunk bounds. */
+    private void writeTiles(DataOutput stream, int from, int to) throws IOException{
+        ChunkOutput scratch = new ChunkOutput();
+
+        //floor + overlay
+        for(int i = from; i < to; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            stream.writeShort(tile.floorID());
+            stream.writeShort(tile.overlayID());
+            int consecutives = 0;
+
+            for(int j = i + 1; j < to && consecutives < 255; j++){
+                Tile nextTile = world.rawTile(j % world.width(), j / world.width());
+
+                if(nextTile.floorID() != tile.floorID() || nextTile.overlayID() != tile.overlayID()){
+                    break;
+                }
+
+                consecutives++;
+            }
+
+            stream.writeByte(consecutives);
+            i += consecutives;
+        }
+
+        //blocks
+        for(int i = from; i < to; i++){
+            Tile tile = world.rawTile(i % world.width(), i / world.width());
+            stream.writeShort(tile.blockID());
+
+            if(tile.entity != null){
+                scratch.write(stream, out -> {
+                    out.writeByte(tile.entity.version());
+                    tile.entity.write(out);
+                });
+            }else{
+                //write consecutive non-entity blocks
+                int consecutives = 0;
+
+                for(int j = i + 1; j < to && consecutives < 255; j++){
+                    Tile nextTile = world.rawTile(j % world.width(), j / world.width());
+
+                    if(nextTile.blockID() != tile.blockID()){
+                        break;
+                    }
+
+                    consecutives++;
+                }
+
+                stream.writeByte(consecutives);
+                i += consecutives;
+            }
+        }
+    }
+
+    private void readFloors(DataInput stream, WorldContext context, int width, int from, int to) throws IOException{
+        for(int i = from; i < to; i++){
+            short floorid = stream.readShort();
+            short oreid = stream.readShort();
+            int consecutives = stream.readUnsignedByte();
+            if(content.block(floorid) == Blocks.air) floorid = Blocks.stone.id;
+
+            for(int j = i; j < i + 1 + consecutives; j++){
+                context.create(j % width, j / width, floorid, oreid, (short)0);
+            }
+
+            i += consecutives;
+        }
+    }
+
+    private void readBlocks(DataInput stream, WorldContext context, int width, int from, int to) throws IOException{
+        for(int i = from; i < to; i++){
+            Block block = content.block(stream.readShort());
+            Tile tile = context.tile(i % width, i / width);
+            if(block == null) block = Blocks.air;
+            tile.setBlock(block);
+
+            if(tile.entity != null){
+                try{
+                    readChunk(stream, true, in -> {
+                        byte version = in.readByte();
+                        tile.entity.read(in, version);
+                    });
+                }catch(Exception e){
+                    throw new IOException("Failed to read tile entity of block: " + block, e);
+                }
+            }else{
+                int consecutives = stream.readUnsignedByte();
+
+                for(int j = i + 1; j < i + 1 + consecutives; j++){
+                    context.tile(j % width, j / width).setBlock(block);
+                }
+
+                i += consecutives;
+            }
+        }
+    }
+
+    /** Encodes and compresses chunks in parallel, then writes the codec and the chunk index, followed by the compressed chunks. */
+    private void writeChunks(DataOutput stream, int amount, ChunkWriter writer) throws IOException{
+        SaveCodec codec = this.codec;
+        Array<Future<EncodedChunk>> futures = new Array<>(amount);
+        for(int i = 0; i < amount; i++){
+            int index = i;
+            futures.add(executor().submit(() -> {
+                ReusableByteOutStream raw = new ReusableByteOutStream();
+                writer.write(index, new DataOutputStream(raw));
+                return new EncodedChunk(raw.size(), codec.compress(raw.getBytes(), 0, raw.size()));
+            }));
+        }
+
+        EncodedChunk[] chunks = new EncodedChunk[amount];
+        for(int i = 0; i < amount; i++){
+            chunks[i] = await(futures.get(i));
+        }
+
+        stream.writeByte(codec.ordinal());
+        stream.writeInt(amount);
+        for(EncodedChunk chunk : chunks){
+            stream.writeInt(chunk.rawLength);
+            stream.writeInt(chunk.data.length);
+        }
+        for(EncodedChunk chunk : chunks){
+            stream.write(chunk.data);
+        }
+    }
+
+    /** Reads the codec, the chunk index and the compressed chunks, and decompresses them in parallel. */
+    private DataInputStream[] readChunks(DataInput stream) throws IOException{
+        SaveCodec codec = SaveCodec.get(stream.readUnsignedByte());
+        int amount = stream.readInt();
+        int[] rawLengths = new int[amount];
+        int[] lengths = new int[amount];
+        for(int i = 0; i < amount; i++){
+            rawLengths[i] = stream.readInt();
+            lengths[i] = stream.readInt();
+        }
+
+        Array<Future<byte[]>> futures = new Array<>(amount);
+        for(int i = 0; i < amount; i++){
+            byte[] compressed = new byte[lengths[i]];
+            stream.readFully(compressed);
+            int rawLength = rawLengths[i];
+
+            futures.add(executor().submit(() -> codec.decompress(compressed, rawLength)));
+        }
+
+        DataInputStream[] chunks = new DataInputStream[amount];
+        for(int i = 0; i < amount; i++){
+            chunks[i] = new DataInputStream(new ByteArrayInputStream(await(futures.get(i))));
+        }
+        return chunks;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException{
+        try{
+            return future.get();
+        }catch(ExecutionException e){
+            throw e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+        }catch(InterruptedException e){
+            throw new IOException(e);
+        }
+    }
+
+    private static synchronized ExecutorService executor(){
+        if(executor == null){
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "Save Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private static class EncodedChunk{
+        final int rawLength;
+        final byte[] data;
+
+        EncodedChunk(int rawLength, byte[] data){
+            this.rawLength = rawLength;
+            this.data = data;
+        }
+    }
+
+    private interface ChunkWriter{
+        void write(int index, DataOutput stream) throws IOException;
+    }
+
+    /** Writes length-prefixed entries like {@link #writeChunk(DataOutput, boolean, IORunner)}, with a buffer owned by one worker. */
+    private static class ChunkOutput{
+        final ReusableByteOutStream bytes = new ReusableByteOutStream();
+        final DataOutputStream data = new DataOutputStream(bytes);
+
+        void write(DataOutput output, IORunner<DataOutput> runner) throws IOException{
+            bytes.reset();
+            runner.accept(data);
+            if(bytes.size() > Short.MAX_VALUE){
+                throw new IOException("Byte write length exceeded: " + bytes.size() + " > " + Short.MAX_VALUE);
+            }
+            output.writeShort(bytes.size());
+            output.write(bytes.getBytes(), 0, bytes.size());
+        }
+    }
+}
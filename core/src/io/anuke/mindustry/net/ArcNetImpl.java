@@ -16,6 +16,7 @@ import java.net.*;
 import java.nio.*;
 import java.nio.channels.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -27,6 +28,15 @@ public class ArcNetImpl implements NetProvider{
     final CopyOnWriteArrayList<ArcConnection> connections = new CopyOnWriteArrayList<>();
     Thread serverThread;
 
+    /** Packets received by the client, waiting to be handled on the main thread. */
+    final ConcurrentLinkedQueue<Object> clientInbound = new ConcurrentLinkedQueue<>();
+    /** Server connections that have received packets since the last drain. */
+    final ConcurrentLinkedQueue<ArcConnection> pending = new ConcurrentLinkedQueue<>();
+    /** Whether a drain of the received packets is already posted to the main thread. */
+    final AtomicBoolean drainPosted = new AtomicBoolean();
+    final AtomicInteger queuedPackets = new AtomicInteger();
+    volatile long drainTime;
+
     public ArcNetImpl(){
         client = new Client(8192, 4096, new PacketSerializer());
         client.setDiscoveryPacket(packetSupplier);
@@ -37,7 +47,7 @@ public class ArcNetImpl implements NetProvider{
                 c.addressTCP = connection.getRemoteAddressTCP().getAddress().getHostAddress();
                 if(connection.getRemoteAddressTCP() != null) c.addressTCP = connection.getRemoteAddressTCP().toString();
 
-                Core.app.post(() -> net.handleClientReceived(c));
+                receiveClient(c);
             }
 
             @Override
@@ -48,21 +58,14 @@ public class ArcNetImpl implements NetProvider{
 
                 Disconnect c = new Disconnect();
                 c.reason = reason.toString();
-                Core.app.post(() -> net.handleClientReceived(c));
+                receiveClient(c);
             }
 
             @Override
             public void received(Connection connection, Object object){
                 if(object instanceof FrameworkMessage) return;
 
-                Core.app.post(() -> {
-                    try{
-                        net.handleClientReceived(object);
-                    }catch(Exception e){
-                        handleException(e);
-                    }
-                });
-
+                receiveClient(object);
             }
         });
 
@@ -88,7 +91,7 @@ public class ArcNetImpl implements NetProvider{
                 Log.debug("&bRecieved connection: {0}", c.addressTCP);
 
                 connections.add(kn);
-                Core.app.post(() -> net.handleServerReceived(kn, c));
+                receiveServer(kn, c);
             }
 
             @Override
@@ -98,11 +101,7 @@ public class ArcNetImpl implements NetProvider{
 
                 Disconnect c = new Disconnect();
                 c.reason = reason.toString();
-
-                Core.app.post(() -> {
-                    net.handleServerReceived(k, c);
-                    connections.remove(k);
-                });
+                receiveServer(k, c);
             }
 
             @Override
@@ -110,22 +109,110 @@ public class ArcNetImpl implements NetProvider{
                 ArcConnection k = getByArcID(connection.getID());
                 if(object instanceof FrameworkMessage || k == null) return;
 
-                Core.app.post(() -> {
-                    try{
-                        net.handleServerReceived(k, object);
-                    }catch(RuntimeException e){
-                        if(e.getCause() instanceof ValidateException){
-                            ValidateException v = (ValidateException)e.getCause();
-                            Log.err("Validation failed: {0} ({1})", v.player.name, v.getMessage());
-                        }else{
-                            e.printStackTrace();
-                        }
-                    }catch(Exception e){
+                //packets the server has no listener for are dropped here, instead of on the main thread
+                if(!net.handlesServer(object.getClass())){
+                    Log.err("Unhandled packet type: '{0}'!", object.getClass());
+                    return;
+                }
+
+                receiveServer(k, object);
+            }
+        });
+    }
+
+    /** Queues a packet received by the client. Called on the network thread. */
+    private void receiveClient(Object object){
+        clientInbound.add(object);
+        queuedPackets.incrementAndGet();
+        postDrain();
+    }
+
+    /** Queues a packet received by a server connection. Called on the network thread. */
+    private void receiveServer(ArcConnection con, Object object){
+        con.inbound.add(object);
+        queuedPackets.incrementAndGet();
+        if(con.pending.compareAndSet(false, true)){
+            pending.add(con);
+        }
+        postDrain();
+    }
+
+    private void postDrain(){
+        if(drainPosted.compareAndSet(false, true)){
+            Core.app.post(this::drain);
+        }
+    }
+
+    /**
+     * Handles the received packets in one batch. Called on the main thread.
+     * Only the packets that were queued when the drain started are handled, so a flood of packets can not stall the frame;
+     * the rest are handled by another drain posted for the next frame.
+     */
+    private void drain(){
+        //packets received from now on need another drain
+        drainPosted.set(false);
+        long start = Time.nanos();
+        int budget = queuedPackets.get();
+        Object object;
+
+        while(budget > 0 && (object = clientInbound.poll()) != null){
+            queuedPackets.decrementAndGet();
+            budget--;
+
+            try{
+                net.handleClientReceived(object);
+            }catch(Exception e){
+                handleException(e);
+            }
+        }
+
+        ArcConnection con;
+        while(budget > 0 && (con = pending.poll()) != null){
+            con.pending.set(false);
+
+            while(budget > 0 && (object = con.inbound.poll()) != null){
+                queuedPackets.decrementAndGet();
+                budget--;
+
+                try{
+                    net.handleServerReceived(con, object);
+                }catch(RuntimeException e){
+                    if(e.getCause() instanceof ValidateException){
+                        ValidateException v = (ValidateException)e.getCause();
+                        Log.err("Validation failed: {0} ({1})", v.player.name, v.getMessage());
+                    }else{
                         e.printStackTrace();
                     }
-                });
+                }catch(Exception e){
+                    e.printStackTrace();
+                }
+
+                if(object instanceof Disconnect){
+                    connections.remove(con);
+                }
             }
-        });
+
+            //the rest of this connection's packets are handled after the other connections
+            if(!con.inbound.isEmpty() && con.pending.compareAndSet(false, true)){
+                pending.add(con);
+            }
+        }
+
+        if(queuedPackets.get() > 0){
+            postDrain();
+        }
+
+        drainTime = Time.timeSinceNanos(start);
+    }
+
+    @Override
+    public int getQueuedPackets(){
+        return queuedPackets.get();
+    }
+
+    @Override
+    public long getDrainTime(){
+        return drainTime;
     }
 
     private static boolean isLocal(InetAddress addr){
@@ -284,6 +371,10 @@ public class ArcNetImpl implements NetProvider{
 
     class ArcConnection extends NetConnection{
         public final Connection connection;
+        /** Received packets waiting to be handled on the main thread. */
+        final ConcurrentLinkedQueue<Object> inbound = new ConcurrentLinkedQueue<>();
+        /** Whether this connection is queued to be drained. */
+        final AtomicBoolean pending = new AtomicBoolean();
 
         public ArcConnection(String address, Connection connection){
             super(address);
@@ -0,0 +1,69 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.func.*;
+import io.anuke.mindustry.net.Net.*;
+import io.anuke.mindustry.net.Packets.*;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Collects the batched remote invocations sent over one connection with one send mode, so they are sent as one packet per update.
+ * The batch is sent early if it would grow larger than {@link #maxSize}, which fits into one datagram.
+ */
+public class InvokeBatch{
+    /** Maximum size of the invocation data in one batch packet, in bytes. */
+    public static final int maxSize = 1024;
+    /** Size of the type and length written before each invocation. */
+    private static final int headerSize = 3;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(maxSize);
+    private final SendMode mode;
+    private final Cons2<Object, SendMode> sender;
+    private short amount;
+
+    public InvokeBatch(SendMode mode, Cons2<Object, SendMode> sender){
+        this.mode = mode;
+        this.sender = sender;
+    }
+
+    /**
+     * Adds an invocation to this batch. Invocations too large for a batch are sent immediately.
+     * @return whether the invocation was copied into the batch, so the packet can be freed by the caller.
+     */
+    public boolean add(InvokePacket packet){
+        if(packet.writeLength + headerSize > maxSize){
+            sender.get(packet, mode);
+            return false;
+        }
+
+        if(buffer.position() + packet.writeLength + headerSize > maxSize){
+            flush();
+        }
+
+        buffer.put(packet.type);
+        buffer.putShort((short)packet.writeLength);
+        buffer.put(packet.writeBuffer.array(), 0, packet.writeLength);
+        amount++;
+        return true;
+    }
+
+    /** Sends all invocations added since the last flush, if there are any. */
+    public void flush(){
+        if(amount == 0) return;
+
+        InvokeBatchPacket packet = new InvokeBatchPacket();
+        packet.amount = amount;
+        packet.data = Arrays.copyOf(buffer.array(), buffer.position());
+        sender.get(packet, mode);
+
+        buffer.position(0);
+        amount = 0;
+    }
+
+    /** Discards all invocations that were not sent yet. */
+    public void clear(){
+        buffer.position(0);
+        amount = 0;
+    }
+}
@@ -13,6 +13,7 @@ import net.jpountz.lz4.*;
 
 import java.io.*;
 import java.nio.*;
+import java.util.*;
 
 import static io.anuke.mindustry.Vars.*;
 
@@ -30,11 +31,17 @@ public class Net{
     private final IntMap<StreamBuilder> streams = new IntMap<>();
 
     private final NetProvider provider;
+    /** Batched remote invocations sent to the server, if this is a client. */
+    private final InvokeBatch tcpBatch, udpBatch;
     private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
     private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    /** Reusable destinations for compressed snapshots, one per thread, as snapshots may be encoded on worker threads. */
+    private final ThreadLocal<ByteBuffer> compressBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
 
     public Net(NetProvider provider){
         this.provider = provider;
+        this.tcpBatch = new InvokeBatch(SendMode.tcp, provider::sendClient);
+        this.udpBatch = new InvokeBatch(SendMode.udp, provider::sendClient);
     }
 
     /** Display a network error. Call on the graphics thread. */
@@ -154,6 +161,8 @@ public class Net{
 
     public void disconnect(){
         provider.disconnectClient();
+        tcpBatch.clear();
+        udpBatch.clear();
         server = false;
         active = false;
     }
@@ -162,10 +171,40 @@ public class Net{
         return compressor.compress(input);
     }
 
+    /**
+     * Compresses a snapshot into a buffer that is reused by the calling thread, without allocating.
+     * The returned buffer contains the compressed data between its position and limit, and is only valid until the next call on this thread.
+     */
+    public ByteBuffer compressSnapshot(byte[] input, int offset, int length){
+        int max = compressor.maxCompressedLength(length);
+        ByteBuffer buffer = compressBuffers.get();
+        if(buffer.capacity() < max){
+            buffer = ByteBuffer.allocate(Math.max(max, buffer.capacity() * 2));
+            compressBuffers.set(buffer);
+        }
+
+        int size = compressor.compress(input, offset, length, buffer.array(), 0, max);
+        buffer.position(0);
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /** Compresses a snapshot into a new buffer, which can be kept after the next compression. */
+    public ByteBuffer compressSnapshotCopy(byte[] input, int offset, int length){
+        ByteBuffer buffer = compressSnapshot(input, offset, length);
+        return ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.limit()));
+    }
+
     public byte[] decompressSnapshot(byte[] input, int size){
         return decompressor.decompress(input, size);
     }
 
+    public byte[] decompressSnapshot(ByteBuffer input, int size){
+        byte[] result = new byte[size];
+        decompressor.decompress(input.array(), input.arrayOffset() + input.position(), result, 0, size);
+        return result;
+    }
+
     /**
      * Starts discovering servers on a different thread.
      * Callback is run on the main libGDX thread.
@@ -201,6 +240,44 @@ public class Net{
         }
     }
 
+    /**
+     * Queues a remote invocation to be sent to all connected clients, or to the server if this is a client, with the next {@link #flushBatches()}.
+     * The packet is freed once it is copied into the batches.
+     */
+    public void sendBatched(InvokePacket packet, SendMode mode){
+        if(server){
+            for(NetConnection con : provider.getConnections()){
+                con.queue(packet, mode);
+            }
+            Pools.free(packet);
+        }else if((mode == SendMode.tcp ? tcpBatch : udpBatch).add(packet)){
+            //packets that are too large for a batch are sent and freed by the provider
+            Pools.free(packet);
+        }
+    }
+
+    /** Queues a remote invocation to be sent to everyone EXCEPT a certain client, and frees the packet. Server-side only. */
+    public void sendBatchedExcept(NetConnection except, InvokePacket packet, SendMode mode){
+        for(NetConnection con : getConnections()){
+            if(con != except){
+                con.queue(packet, mode);
+            }
+        }
+        Pools.free(packet);
+    }
+
+    /** Sends all queued remote invocations. Called once at the end of each update. */
+    public void flushBatches(){
+        if(server()){
+            for(NetConnection con : provider.getConnections()){
+                con.flushBatches();
+            }
+        }else if(client()){
+            tcpBatch.flush();
+            udpBatch.flush();
+        }
+    }
+
     public @Nullable StreamBuilder getCurrentStream(){
         return currentStream;
     }
@@ -256,6 +333,21 @@ public class Net{
         }
     }
 
+    /** @return whether the server has a listener for this type of packet. May be called from any thread. */
+    public boolean handlesServer(Class<?> type){
+        return serverListeners.containsKey(type);
+    }
+
+    /** @return the amount of received packets waiting to be handled. */
+    public int getQueuedPackets(){
+        return provider.getQueuedPackets();
+    }
+
+    /** @return the time it took to handle the last batch of received packets, in nanoseconds. */
+    public long getDrainTime(){
+        return provider.getDrainTime();
+    }
+
     /**
      * Call to handle a packet being recieved for the server.
      */
@@ -338,6 +430,16 @@ public class Net{
         /** Close the server connection. */
         void closeServer();
 
+        /** @return the amount of received packets waiting to be handled on the main thread. */
+        default int getQueuedPackets(){
+            return 0;
+        }
+
+        /** @return the time it took to handle the last batch of received packets, in nanoseconds. */
+        default long getDrainTime(){
+            return 0;
+        }
+
         /** Close all connections. */
         default void dispose(){
             disconnectClient();
@@ -1,7 +1,9 @@
 package io.anuke.mindustry.net;
 
+import io.anuke.arc.collection.*;
 import io.anuke.arc.util.*;
 import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.arc.util.pooling.*;
 import io.anuke.mindustry.entities.type.*;
 import io.anuke.mindustry.gen.*;
 import io.anuke.mindustry.net.Administration.*;
@@ -22,6 +24,17 @@ public abstract class NetConnection{
     public int lastRecievedClientSnapshot = -1;
     /** Timestamp of last recieved snapshot. */
     public long lastRecievedClientTime;
+    /** ID of the last entity snapshot sent to this connection. */
+    public int lastSentSnapshot = -1;
+    /** ID of the last entity snapshot this connection has fully received, or -1. */
+    public int lastAckedSnapshot = -1;
+    /** Entity states of recently sent snapshots, used as baselines for delta encoding. */
+    public final SnapshotHistory snapshots = new SnapshotHistory();
+    /** IDs of culled entities that were synced in the last snapshot, and the ones synced in the current one. */
+    public IntSet syncedEntities = new IntSet(), nextSyncedEntities = new IntSet();
+
+    /** Batched remote invocations that are sent at the end of the update. */
+    private final InvokeBatch tcpBatch = new InvokeBatch(SendMode.tcp, this::send), udpBatch = new InvokeBatch(SendMode.udp, this::send);
 
     public boolean hasConnected, hasBegunConnecting, hasDisconnected;
     public float viewWidth, viewHeight, viewX, viewY;
@@ -91,6 +104,23 @@ public abstract class NetConnection{
         }
     }
 
+    /** Queues a remote invocation to be sent with the next {@link #flushBatches()}, and frees the packet. */
+    public void sendBatched(InvokePacket packet, SendMode mode){
+        queue(packet, mode);
+        Pools.free(packet);
+    }
+
+    /** Queues a remote invocation without freeing the packet, so it can be queued for several connections. */
+    void queue(InvokePacket packet, SendMode mode){
+        (mode == SendMode.tcp ? tcpBatch : udpBatch).add(packet);
+    }
+
+    /** Sends all queued remote invocations. */
+    public void flushBatches(){
+        tcpBatch.flush();
+        udpBatch.flush();
+    }
+
     public abstract void send(Object object, SendMode mode);
 
     public abstract void close();
@@ -1,12 +1,17 @@
 package io.anuke.mindustry.net;
 
 import io.anuke.arc.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.collection.IntSet.*;
 import io.anuke.arc.util.*;
+import io.anuke.arc.util.io.*;
+import io.anuke.mindustry.content.*;
 import io.anuke.mindustry.core.*;
 import io.anuke.mindustry.entities.type.*;
 import io.anuke.mindustry.game.*;
 import io.anuke.mindustry.io.*;
 import io.anuke.mindustry.maps.Map;
+import io.anuke.mindustry.world.*;
 
 import java.io.*;
 import java.nio.*;
@@ -16,20 +21,48 @@ import static io.anuke.mindustry.Vars.*;
 
 public class NetworkIO{
 
-    public static void writeWorld(Player player, OutputStream os){
+    /**
+     * Writes the world data for a player. The map is written separately with {@link #writeMap(OutputStream, SaveCodec)} and compressed, so it can be shared between players.
+     * @param codec codec used to compress the rest of the world data.
+     * @param map the map data, compressed into a section with {@link #writeSection(SaveCodec, byte[])}.
+     * @param changes positions of tiles that changed since the map was written; their current state is sent along with the map.
+     */
+    public static void writeWorld(Player player, SaveCodec codec, byte[] map, IntSet changes, OutputStream os){
 
-        try(DataOutputStream stream = new DataOutputStream(os)){
-            stream.writeUTF(JsonIO.write(state.rules));
-            SaveIO.getSaveWriter().writeStringMap(stream, world.getMap().tags);
+        try(DataOutputStream output = new DataOutputStream(os)){
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try(DataOutputStream stream = new DataOutputStream(bytes)){
+                stream.writeUTF(JsonIO.write(state.rules));
+                SaveIO.getSaveWriter().writeStringMap(stream, world.getMap().tags);
+
+                stream.writeInt(state.wave);
+                stream.writeFloat(state.wavetime);
+
+                stream.writeInt(player.id);
+                player.write(stream);
 
-            stream.writeInt(state.wave);
-            stream.writeFloat(state.wavetime);
+                SaveIO.getSaveWriter().writeContentHeader(stream);
+            }
 
-            stream.writeInt(player.id);
-            player.write(stream);
+            output.write(writeSection(codec, bytes.toByteArray()));
+            output.write(map);
+
+            bytes.reset();
+            try(DataOutputStream stream = new DataOutputStream(bytes)){
+                writeTiles(stream, changes);
+            }
+
+            output.write(writeSection(codec, bytes.toByteArray()));
+        }catch(IOException e){
+            throw new RuntimeException(e);
+        }
+    }
 
-            SaveIO.getSaveWriter().writeContentHeader(stream);
-            SaveIO.getSaveWriter().writeMap(stream);
+    /** Writes the map data sent to players. Save versions that compress their map regions compress it with the codec. */
+    public static void writeMap(OutputStream os, SaveCodec codec){
+        try(DataOutputStream stream = new DataOutputStream(os)){
+            SaveIO.getSaveWriter().writeMap(stream, codec);
         }catch(IOException e){
             throw new RuntimeException(e);
         }
@@ -37,7 +70,8 @@ public class NetworkIO{
 
     public static void loadWorld(InputStream is){
 
-        try(DataInputStream stream = new DataInputStream(is)){
+        try(DataInputStream input = new DataInputStream(is)){
+            DataInputStream stream = readSection(input);
             Time.clear();
             state.rules = JsonIO.read(Rules.class, stream.readUTF());
             world.setMap(new Map(SaveIO.getSaveWriter().readStringMap(stream)));
@@ -53,7 +87,15 @@ public class NetworkIO{
             player.add();
 
             SaveIO.getSaveWriter().readContentHeader(stream);
-            SaveIO.getSaveWriter().readMap(stream, world.context);
+
+            //apply the changed tiles while the map is still loading, so tiles are only prepared once
+            world.context.begin();
+            try{
+                SaveIO.getSaveWriter().readMap(readSection(input), world.context);
+                readTiles(readSection(input));
+            }finally{
+                world.context.end();
+            }
         }catch(IOException e){
             throw new RuntimeException(e);
         }finally{
@@ -61,6 +103,87 @@ public class NetworkIO{
         }
     }
 
+    /** Writes the current block, team, rotation and entity state of some tiles. */
+    public static void writeTiles(DataOutputStream stream, IntSet positions) throws IOException{
+        ReusableByteOutStream entityBytes = new ReusableByteOutStream();
+        DataOutputStream entityData = new DataOutputStream(entityBytes);
+
+        stream.writeInt(positions.size);
+
+        IntSetIterator it = positions.iterator();
+        while(it.hasNext){
+            Tile tile = world.tile(it.next());
+
+            if(tile == null){
+                stream.writeInt(Pos.invalid);
+                continue;
+            }
+
+            stream.writeInt(tile.pos());
+            stream.writeShort(tile.blockID());
+            stream.writeByte(tile.getTeamID());
+            stream.writeByte(tile.rotation());
+
+            if(tile.entity != null){
+                entityBytes.reset();
+                entityData.writeByte(tile.entity.version());
+                tile.entity.write(entityData);
+
+                stream.writeInt(entityBytes.size());
+                stream.write(entityBytes.toByteArray());
+            }
+        }
+    }
+
+    /** Applies tile states written by {@link #writeTiles(DataOutputStream, IntSet)} to the loaded world. */
+    public static void readTiles(DataInputStream stream) throws IOException{
+        int amount = stream.readInt();
+
+        for(int i = 0; i < amount; i++){
+            int pos = stream.readInt();
+            if(pos == Pos.invalid) continue;
+
+            Tile tile = world.tile(pos);
+            Block block = content.block(stream.readShort());
+            if(block == null) block = Blocks.air;
+            Team team = Team.all[stream.readByte()];
+            tile.setBlock(block, team, stream.readByte());
+
+            if(tile.entity != null){
+                byte[] bytes = new byte[stream.readInt()];
+                stream.readFully(bytes);
+
+                try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))){
+                    byte version = in.readByte();
+                    tile.entity.read(in, version);
+                }catch(Exception e){
+                    throw new IOException("Failed to read tile entity of block: " + block, e);
+                }
+            }
+        }
+    }
+
+    /** @return a section of bytes compressed with a codec, prefixed with the codec, its raw length and its compressed length. */
+    public static byte[] writeSection(SaveCodec codec, byte[] bytes) throws IOException{
+        byte[] compressed = codec.compress(bytes, 0, bytes.length);
+        ByteArrayOutputStream section = new ByteArrayOutputStream(compressed.length + 9);
+        DataOutputStream output = new DataOutputStream(section);
+        output.writeByte(codec.ordinal());
+        output.writeInt(bytes.length);
+        output.writeInt(compressed.length);
+        output.write(compressed);
+        return section.toByteArray();
+    }
+
+    /** Reads and decompresses a section. */
+    private static DataInputStream readSection(DataInputStream input) throws IOException{
+        SaveCodec codec = SaveCodec.get(input.readUnsignedByte());
+        int rawLength = input.readInt();
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(codec.decompress(bytes, rawLength)));
+    }
+
     public static ByteBuffer writeServerData(){
         String name = (headless ? Core.settings.getString("servername") : player.name);
         String map = world.getMap() == null ? "None" : world.getMap().name();
@@ -111,14 +111,21 @@ public class Packets{
         public ByteBuffer writeBuffer;
         public int writeLength;
 
+        /** buffer that received data is read into; kept when this packet is pooled, as received packets are freed after being handled */
+        private ByteBuffer readBuffer;
+
         @Override
         public void read(ByteBuffer buffer){
             type = buffer.get();
             priority = buffer.get();
             writeLength = buffer.getShort();
-            byte[] bytes = new byte[writeLength];
-            buffer.get(bytes);
-            writeBuffer = ByteBuffer.wrap(bytes);
+            if(readBuffer == null || readBuffer.capacity() < writeLength){
+                readBuffer = ByteBuffer.allocate(Math.max(writeLength, 64));
+            }
+            readBuffer.clear();
+            readBuffer.limit(writeLength);
+            buffer.get(readBuffer.array(), 0, writeLength);
+            writeBuffer = readBuffer;
         }
 
         @Override
@@ -126,11 +133,7 @@ public class Packets{
             buffer.put(type);
             buffer.put(priority);
             buffer.putShort((short)writeLength);
-
-            writeBuffer.position(0);
-            for(int i = 0; i < writeLength; i++){
-                buffer.put(writeBuffer.get());
-            }
+            buffer.put(writeBuffer.array(), writeBuffer.arrayOffset(), writeLength);
         }
 
         @Override
@@ -149,6 +152,26 @@ public class Packets{
         }
     }
 
+    /** Several remote invocations sent together; each one is written as its type, its length and its data. */
+    public static class InvokeBatchPacket implements Packet{
+        public short amount;
+        public byte[] data;
+
+        @Override
+        public void read(ByteBuffer buffer){
+            amount = buffer.getShort();
+            data = new byte[buffer.getShort()];
+            buffer.get(data);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer){
+            buffer.putShort(amount);
+            buffer.putShort((short)data.length);
+            buffer.put(data);
+        }
+    }
+
     /** Marks the beginning of a stream. */
     public static class StreamBegin implements Packet{
         private static int lastid;
@@ -0,0 +1,225 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.math.geom.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.arc.util.io.*;
+import io.anuke.mindustry.entities.*;
+import io.anuke.mindustry.entities.traits.*;
+import io.anuke.mindustry.world.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Captures the sync state of entities once per frame, so it can be encoded for any amount of players, on any thread.
+ * Entities of culled groups are bucketed into cells, so each player only receives the cells near their view.
+ * Each bucket is split into pre-compressed chunks that fit into one snapshot packet.
+ */
+public class SnapshotCache{
+    /** Size of the cells entities are bucketed into, in world units. */
+    public static final float cellSize = 256f;
+
+    private final int maxChunkSize;
+    private final ReusableByteOutStream stateStream = new ReusableByteOutStream();
+    private final DataOutputStream stateData = new DataOutputStream(stateStream);
+    private @Nullable Frame frame;
+    private long frameID = -1;
+
+    public SnapshotCache(int maxChunkSize){
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Returns the sync state of this frame, which is captured the first time it is requested in a frame.
+     * Must be called on the main thread. The result is immutable and can be read from any thread.
+     * @param bucketed whether to bucket entities of culled groups into cells.
+     * @param history whether the chunks are stored by clients as baselines for delta snapshots, which requires the length of each state.
+     */
+    public Frame frame(boolean bucketed, boolean history) throws IOException{
+        if(frame == null || frameID != Core.graphics.getFrameId() || frame.history != history){
+            frameID = Core.graphics.getFrameId();
+            frame = capture(bucketed, history);
+        }
+        return frame;
+    }
+
+    private Frame capture(boolean bucketed, boolean history) throws IOException{
+        Frame frame = new Frame(history);
+
+        //check for syncable groups
+        for(EntityGroup<?> group : entities.all()){
+            if(group.isEmpty() || !(group.all().get(0) instanceof SyncTrait)) continue;
+
+            //make sure mapping is enabled for this group
+            if(!group.mappingEnabled()){
+                throw new RuntimeException("Entity group '" + group.getType() + "' contains SyncTrait entities, yet mapping is not enabled. In order for syncing to work, you must enable mapping for this group.");
+            }
+
+            GroupState state = new GroupState(group.getID(), group.isSyncCulled(), bucketed && group.isSyncCulled(), history, group.size(), maxChunkSize);
+            stateStream.reset();
+
+            //states are written back to back, and copied into one array for the group
+            for(Entity entity : group.all()){
+                SyncTrait sync = (SyncTrait)entity;
+                if(!sync.isSyncing()) continue;
+
+                int offset = stateStream.size();
+                sync.write(stateData);
+                state.add(sync.getID(), sync.getTypeID().id, offset, stateStream.size() - offset, sync.getX(), sync.getY());
+            }
+
+            state.states = Arrays.copyOf(stateStream.getBytes(), stateStream.size());
+
+            frame.groups.add(state);
+        }
+
+        return frame;
+    }
+
+    /** The sync state of all syncing groups in one frame. */
+    public static class Frame{
+        public final Array<GroupState> groups = new Array<>();
+        /** Whether the chunks of this frame are encoded for delta snapshots. */
+        public final boolean history;
+
+        Frame(boolean history){
+            this.history = history;
+        }
+    }
+
+    /** The serialized states and positions of the syncing entities in a group. */
+    public static class GroupState{
+        public final int groupID;
+        /** Whether this group may be culled by area of interest. */
+        public final boolean culled;
+        public int size;
+        public final int[] ids;
+        public final byte[] types;
+        /** Serialized states of all entities; the state of each entity is the range at its offset and length. */
+        public byte[] states;
+        public final int[] offsets, lengths;
+        public final float[] x, y;
+
+        private final boolean bucketed, history;
+        private final int maxChunkSize;
+        private @Nullable Array<Bucket> buckets;
+
+        GroupState(int groupID, boolean culled, boolean bucketed, boolean history, int capacity, int maxChunkSize){
+            this.groupID = groupID;
+            this.culled = culled;
+            this.bucketed = bucketed;
+            this.history = history;
+            this.maxChunkSize = maxChunkSize;
+            ids = new int[capacity];
+            types = new byte[capacity];
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            x = new float[capacity];
+            y = new float[capacity];
+        }
+
+        void add(int id, byte type, int offset, int length, float x, float y){
+            ids[size] = id;
+            types[size] = type;
+            offsets[size] = offset;
+            lengths[size] = length;
+            this.x[size] = x;
+            this.y[size] = y;
+            size++;
+        }
+
+        /** @return the full states of this group, encoded into chunks when first requested. */
+        public synchronized Array<Bucket> buckets() throws IOException{
+            if(buckets != null) return buckets;
+
+            buckets = new Array<>();
+            IntMap<Bucket> cells = new IntMap<>();
+
+            for(int i = 0; i < size; i++){
+                int cx = bucketed ? (int)Math.floor(x[i] / cellSize) : 0, cy = bucketed ? (int)Math.floor(y[i] / cellSize) : 0;
+                int key = Pos.get(cx, cy);
+                Bucket bucket = cells.get(key);
+                if(bucket == null){
+                    bucket = new Bucket(bucketed, cx * cellSize, cy * cellSize);
+                    cells.put(key, bucket);
+                    buckets.add(bucket);
+                }
+                bucket.entities.add(i);
+            }
+
+            ReusableByteOutStream stream = new ReusableByteOutStream();
+            DataOutputStream data = new DataOutputStream(stream);
+
+            for(Bucket bucket : buckets){
+                int start = 0;
+                stream.reset();
+
+                for(int j = 0; j < bucket.entities.size; j++){
+                    int i = bucket.entities.get(j);
+
+                    data.writeInt(ids[i]); //write id
+                    data.writeByte(types[i]); //write type ID
+                    //write full state
+                    if(history){
+                        SnapshotHistory.write(data, states, offsets[i], lengths[i], null);
+                    }else{
+                        data.write(states, offsets[i], lengths[i]);
+                    }
+
+                    if(stream.size() > maxChunkSize || j == bucket.entities.size - 1){
+                        bucket.chunks.add(new Chunk(this, bucket.entities, start, j + 1, stream));
+                        start = j + 1;
+                        stream.reset();
+                    }
+                }
+            }
+
+            return buckets;
+        }
+    }
+
+    /** A cell of entities in a group. */
+    public static class Bucket{
+        public final Array<Chunk> chunks = new Array<>();
+
+        private final IntArray entities = new IntArray();
+        private final Rectangle bounds = new Rectangle();
+        private final boolean bucketed;
+
+        Bucket(boolean bucketed, float x, float y){
+            this.bucketed = bucketed;
+            bounds.set(x, y, cellSize, cellSize);
+        }
+
+        /** @return whether this bucket may contain entities inside this rectangle. */
+        public boolean overlaps(Rectangle rect){
+            return !bucketed || bounds.overlaps(rect);
+        }
+    }
+
+    /** A pre-compressed list of full entity states that fits into one snapshot packet. */
+    public static class Chunk{
+        /** Size of the uncompressed data. */
+        public final short length;
+        /** The compressed data; shared between players, so it must not be modified. */
+        public final ByteBuffer data;
+        /** IDs of the entities in this chunk, and their indices in the group, in order. */
+        public final int[] ids, entities;
+
+        Chunk(GroupState group, IntArray indices, int from, int to, ReusableByteOutStream bytes){
+            length = (short)bytes.size();
+            data = net.compressSnapshotCopy(bytes.getBytes(), 0, bytes.size());
+            ids = new int[to - from];
+            entities = new int[to - from];
+            for(int i = from; i < to; i++){
+                entities[i - from] = indices.get(i);
+                ids[i - from] = group.ids[indices.get(i)];
+            }
+        }
+    }
+}
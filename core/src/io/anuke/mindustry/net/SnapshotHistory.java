@@ -0,0 +1,208 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.arc.util.io.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Stores the serialized entity states of the most recent snapshots, so that new snapshots can be encoded relative to them.
+ * The server keeps one of these per connection for the snapshots it sent, and the client keeps one for the snapshots it received.
+ * States are only encoded as a delta against a snapshot that the client has acknowledged receiving in full.
+ * The states of a snapshot are copied into one buffer, which is reused once the snapshot is evicted.
+ */
+public class SnapshotHistory{
+    /**
+     * Base ID of snapshot packets sent while delta snapshots are disabled. Their states are not stored,
+     * and are written as-is after the entity ID and type, without the length and encoding written by {@link #write(DataOutput, byte[], int, int, State)}.
+     */
+    public static final int noHistory = -2;
+    /** Amount of snapshots kept. Deltas against older snapshots fall back to full states. */
+    public static final int capacity = 16;
+    /** Size of a delta-encoded field, in bytes. */
+    private static final int wordSize = 4;
+
+    private final int[] ids = new int[capacity];
+    private final int[] received = new int[capacity];
+    private final int[] expected = new int[capacity];
+    private final boolean[] failed = new boolean[capacity];
+    /** states of each snapshot, and their offsets and lengths in it by entity ID */
+    private final ReusableByteOutStream[] states = new ReusableByteOutStream[capacity];
+    private final IntIntMap[] offsets = new IntIntMap[capacity], lengths = new IntIntMap[capacity];
+
+    public SnapshotHistory(){
+        for(int i = 0; i < capacity; i++){
+            states[i] = new ReusableByteOutStream();
+            offsets[i] = new IntIntMap();
+            lengths[i] = new IntIntMap();
+        }
+        clear();
+    }
+
+    /**
+     * Makes sure a snapshot is stored, evicting the oldest one if needed.
+     * @return false if the snapshot is too old to be stored.
+     */
+    public boolean begin(int id){
+        if(id < 0) return false;
+        int slot = id % capacity;
+        if(ids[slot] == id) return true;
+        if(ids[slot] > id) return false;
+
+        ids[slot] = id;
+        received[slot] = 0;
+        expected[slot] = -1;
+        failed[slot] = false;
+        states[slot].reset();
+        offsets[slot].clear();
+        lengths[slot].clear();
+        return true;
+    }
+
+    /** @return whether this snapshot is still stored. */
+    public boolean has(int id){
+        return id >= 0 && ids[id % capacity] == id;
+    }
+
+    public void put(int id, int entity, byte[] state){
+        put(id, entity, state, 0, state.length);
+    }
+
+    /** Copies the state of an entity in a snapshot, which is a range of some bytes. */
+    public void put(int id, int entity, byte[] bytes, int offset, int length){
+        if(has(id)){
+            int slot = id % capacity;
+            offsets[slot].put(entity, states[slot].size());
+            lengths[slot].put(entity, length);
+            states[slot].write(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Points a view at the state of an entity in a snapshot. The view is valid until the snapshot is evicted.
+     * @return the view, or null if the state is not stored.
+     */
+    public @Nullable State get(int id, int entity, State view){
+        if(!has(id)) return null;
+        int slot = id % capacity;
+        int offset = offsets[slot].get(entity, -1);
+        if(offset == -1) return null;
+        return view.set(states[slot].getBytes(), offset, lengths[slot].get(entity, 0));
+    }
+
+    /** Registers a received packet of a snapshot. Marks the snapshot as unusable as a baseline if not all states could be read. */
+    public void received(int id, boolean complete){
+        if(has(id)){
+            received[id % capacity]++;
+            failed[id % capacity] |= !complete;
+        }
+    }
+
+    /** Sets the amount of packets a snapshot consists of. */
+    public void expect(int id, int packets){
+        if(has(id)){
+            expected[id % capacity] = packets;
+        }
+    }
+
+    /** @return whether all packets of this snapshot were received and read. */
+    public boolean isComplete(int id){
+        int slot = id % capacity;
+        return has(id) && !failed[slot] && received[slot] == expected[slot];
+    }
+
+    public void clear(){
+        Arrays.fill(ids, -1);
+        for(int i = 0; i < capacity; i++){
+            states[i].reset();
+            offsets[i].clear();
+            lengths[i].clear();
+        }
+    }
+
+    /** Writes a state, which is a range of some bytes, encoded as the list of changed fields if a baseline of the same size is provided. */
+    public static void write(DataOutput output, byte[] bytes, int offset, int length, @Nullable State base) throws IOException{
+        output.writeShort(length);
+
+        if(base == null || base.length != length){
+            output.writeBoolean(false);
+            output.write(bytes, offset, length);
+            return;
+        }
+
+        output.writeBoolean(true);
+
+        //write a bitmask of changed words, then the changed words themselves
+        int words = (length + wordSize - 1) / wordSize;
+        for(int i = 0; i < words; i += 8){
+            int mask = 0;
+            for(int j = 0; j < 8 && i + j < words; j++){
+                if(changed(bytes, offset, length, base, (i + j) * wordSize)){
+                    mask |= 1 << j;
+                }
+            }
+            output.writeByte(mask);
+        }
+
+        for(int i = 0; i < words; i++){
+            int word = i * wordSize;
+            if(changed(bytes, offset, length, base, word)){
+                output.write(bytes, offset + word, Math.min(wordSize, length - word));
+            }
+        }
+    }
+
+    /**
+     * Reads a state written with {@link #write(DataOutput, byte[], int, int, State)}.
+     * @return the state, or null if it was encoded against a baseline that is not available.
+     */
+    public static @Nullable byte[] read(DataInput input, @Nullable State base) throws IOException{
+        int length = input.readUnsignedShort();
+        byte[] state = new byte[length];
+
+        if(!input.readBoolean()){
+            input.readFully(state);
+            return state;
+        }
+
+        int words = (length + wordSize - 1) / wordSize;
+        byte[] masks = new byte[(words + 7) / 8];
+        input.readFully(masks);
+
+        boolean valid = base != null && base.length == length;
+        if(valid){
+            System.arraycopy(base.bytes, base.offset, state, 0, length);
+        }
+
+        for(int i = 0; i < words; i++){
+            if((masks[i / 8] & (1 << (i % 8))) != 0){
+                int offset = i * wordSize;
+                input.readFully(state, offset, Math.min(wordSize, length - offset));
+            }
+        }
+
+        return valid ? state : null;
+    }
+
+    private static boolean changed(byte[] bytes, int offset, int length, State base, int word){
+        for(int i = word; i < Math.min(word + wordSize, length); i++){
+            if(bytes[offset + i] != base.bytes[base.offset + i]) return true;
+        }
+        return false;
+    }
+
+    /** A view of a stored state; reused between lookups, so states are not copied. */
+    public static class State{
+        public byte[] bytes;
+        public int offset, length;
+
+        State set(byte[] bytes, int offset, int length){
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.collection.*;
+import io.anuke.arc.collection.IntSet.*;
+import io.anuke.arc.math.geom.*;
+import io.anuke.arc.util.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.arc.util.io.*;
+import io.anuke.mindustry.gen.*;
+import io.anuke.mindustry.net.SnapshotCache.*;
+import io.anuke.mindustry.net.SnapshotHistory.*;
+
+import java.io.*;
+import java.nio.*;
+
+import static io.anuke.mindustry.Vars.net;
+
+/**
+ * Encodes the entity snapshot of one connection from a captured {@link Frame}.
+ * Encoding only touches the frame and the snapshot state of the connection, so it can run on any thread.
+ * The encoded packets are sent with {@link #send()}, which must be called on the main thread.
+ */
+public class SnapshotJob implements Runnable{
+    public final NetConnection con;
+
+    private final Frame frame;
+    private final int snapshot, base, maxPacketSize;
+    private final boolean delta, cull;
+    private final Rectangle viewport = new Rectangle();
+    private final float waveTime;
+    private final int wave, enemies;
+    private final byte[] coreData;
+
+    private final Array<Packet> packets = new Array<>();
+    /** view of the baseline of the entity that is being encoded */
+    private final State baseState = new State();
+    private ByteBuffer compressedCoreData;
+    private int leaves;
+    private byte[] leaveData;
+    private volatile boolean done;
+    private volatile Throwable error;
+
+    /**
+     * @param base ID of the snapshot to encode deltas against, or -1 to send full states.
+     * @param viewport area of interest of the client, or null to send all entities.
+     * @param coreData uncompressed core item data for the state snapshot.
+     */
+    public SnapshotJob(NetConnection con, Frame frame, int snapshot, int base, boolean delta, @Nullable Rectangle viewport, int maxPacketSize,
+                       float waveTime, int wave, int enemies, byte[] coreData){
+        this.con = con;
+        this.frame = frame;
+        this.snapshot = snapshot;
+        this.base = base;
+        this.delta = delta;
+        this.cull = viewport != null;
+        this.maxPacketSize = maxPacketSize;
+        this.waveTime = waveTime;
+        this.wave = wave;
+        this.enemies = enemies;
+        this.coreData = coreData;
+
+        if(viewport != null){
+            this.viewport.set(viewport);
+        }
+    }
+
+    @Override
+    public void run(){
+        try{
+            if(delta){
+                con.snapshots.begin(snapshot);
+            }
+
+            for(GroupState group : frame.groups){
+                boolean culled = cull && group.culled;
+
+                if(base == -1){
+                    writeChunks(group, culled);
+                }else{
+                    writeDeltas(group, culled);
+                }
+            }
+
+            writeLeaves();
+            compressedCoreData = net.compressSnapshotCopy(coreData, 0, coreData.length);
+        }catch(Throwable e){
+            error = e;
+        }
+
+        done = true;
+    }
+
+    /** @return whether the packets are ready to be sent. */
+    public boolean isDone(){
+        return done;
+    }
+
+    /** Sends the encoded packets. */
+    public void send(){
+        if(error != null){
+            Log.err("Failed to encode snapshot for {0}.", con.address);
+            Log.err(error);
+            return;
+        }
+
+        for(Packet packet : packets){
+            Call.onEntitySnapshot(con, packet.group, snapshot, packet.base, packet.amount, packet.length, packet.data);
+        }
+
+        if(leaves > 0){
+            Call.onEntitiesLeave(con, snapshot, (short)leaves, leaveData);
+        }
+
+        //write basic state data last, so the client knows how many entity packets make up this snapshot
+        Call.onStateSnapshot(con, snapshot, (short)packets.size, waveTime, wave, enemies, (short)coreData.length, compressedCoreData);
+    }
+
+    /** Sends the shared pre-encoded chunks; without a baseline, every player gets the same full states. */
+    private void writeChunks(GroupState group, boolean culled) throws IOException{
+        for(Bucket bucket : group.buckets()){
+            if(culled && !bucket.overlaps(viewport)) continue;
+
+            for(Chunk chunk : bucket.chunks){
+                packets.add(new Packet((byte)group.groupID, delta ? -1 : SnapshotHistory.noHistory, (short)chunk.ids.length, chunk.length, chunk.data));
+
+                for(int i = 0; i < chunk.ids.length; i++){
+                    if(culled) con.nextSyncedEntities.add(chunk.ids[i]);
+                    int entity = chunk.entities[i];
+                    if(delta) con.snapshots.put(snapshot, chunk.ids[i], group.states, group.offsets[entity], group.lengths[entity]);
+                }
+            }
+        }
+    }
+
+    /** Writes the entities of a group as deltas against a snapshot the client has. */
+    private void writeDeltas(GroupState group, boolean culled) throws IOException{
+        ReusableByteOutStream stream = new ReusableByteOutStream();
+        DataOutputStream data = new DataOutputStream(stream);
+        short sent = 0;
+
+        for(int i = 0; i < group.size; i++){
+            if(culled && !viewport.contains(group.x[i], group.y[i])) continue;
+
+            int id = group.ids[i];
+            if(culled){
+                con.nextSyncedEntities.add(id);
+            }
+
+            con.snapshots.put(snapshot, id, group.states, group.offsets[i], group.lengths[i]);
+
+            data.writeInt(id); //write id
+            data.writeByte(group.types[i]); //write type ID
+            SnapshotHistory.write(data, group.states, group.offsets[i], group.lengths[i], con.snapshots.get(base, id, baseState)); //write entity
+
+            sent++;
+
+            if(stream.size() > maxPacketSize){
+                flush(group, stream, sent);
+                sent = 0;
+            }
+        }
+
+        if(sent > 0){
+            flush(group, stream, sent);
+        }
+    }
+
+    private void flush(GroupState group, ReusableByteOutStream stream, short sent){
+        packets.add(new Packet((byte)group.groupID, base, sent, (short)stream.size(), net.compressSnapshotCopy(stream.getBytes(), 0, stream.size())));
+        stream.reset();
+    }
+
+    /** Lists culled entities that were synced in the last snapshot, but not in this one, so the client removes them. */
+    private void writeLeaves() throws IOException{
+        ReusableByteOutStream stream = new ReusableByteOutStream();
+        DataOutputStream data = new DataOutputStream(stream);
+
+        IntSetIterator it = con.syncedEntities.iterator();
+        while(it.hasNext){
+            int id = it.next();
+            if(!con.nextSyncedEntities.contains(id)){
+                data.writeInt(id);
+                leaves++;
+            }
+        }
+
+        IntSet last = con.syncedEntities;
+        con.syncedEntities = con.nextSyncedEntities;
+        con.nextSyncedEntities = last;
+        last.clear();
+
+        leaveData = stream.toByteArray();
+    }
+
+    private static class Packet{
+        final byte group;
+        final int base;
+        final short amount, length;
+        final ByteBuffer data;
+
+        Packet(byte group, int base, short amount, short length, ByteBuffer data){
+            this.group = group;
+            this.base = base;
+            this.amount = amount;
+            this.length = length;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.math.*;
+
+import java.io.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Quantized encodings for entity sync data, shared by the read and write methods of quantized {@link io.anuke.mindustry.entities.traits.SyncTrait}s.
+ * Positions are written as 16-bit fixed-point values relative to the world bounds, which both the server and the client know.
+ */
+public class SyncIO{
+    /** Amount of steps a quantized position can take. */
+    private static final int positionSteps = 0xFFFF;
+
+    /** Writes a world X coordinate as an unsigned short. */
+    public static void writeX(DataOutput stream, float x) throws IOException{
+        stream.writeShort(quantize(x, world.width()));
+    }
+
+    /** Writes a world Y coordinate as an unsigned short. */
+    public static void writeY(DataOutput stream, float y) throws IOException{
+        stream.writeShort(quantize(y, world.height()));
+    }
+
+    public static float readX(DataInput stream) throws IOException{
+        return dequantize(stream.readUnsignedShort(), world.width());
+    }
+
+    public static float readY(DataInput stream) throws IOException{
+        return dequantize(stream.readUnsignedShort(), world.height());
+    }
+
+    /** Writes an angle in degrees as a byte, with a precision of about 1.4 degrees. */
+    public static void writeAngle(DataOutput stream, float angle) throws IOException{
+        stream.writeByte((int)((angle % 360f + 360f) % 360f / 360f * 256f + 0.5f));
+    }
+
+    /** @return an angle written with {@link #writeAngle(DataOutput, float)}, in [0, 360). */
+    public static float readAngle(DataInput stream) throws IOException{
+        return stream.readUnsignedByte() / 256f * 360f;
+    }
+
+    /** @return the distance between two adjacent quantized positions on an axis of this many tiles. */
+    public static float precision(int tiles){
+        return range(tiles) / positionSteps;
+    }
+
+    private static int quantize(float value, int tiles){
+        return (int)(Mathf.clamp((value + worldBounds) / range(tiles), 0f, 1f) * positionSteps + 0.5f);
+    }
+
+    private static float dequantize(int value, int tiles){
+        return value / (float)positionSteps * range(tiles) - worldBounds;
+    }
+
+    private static float range(int tiles){
+        return tiles * tilesize + worldBounds * 2f;
+    }
+}
@@ -0,0 +1,145 @@
+package io.anuke.mindustry.net;
+
+import io.anuke.arc.*;
+import io.anuke.arc.collection.*;
+import io.anuke.arc.util.*;
+import io.anuke.arc.util.ArcAnnotate.*;
+import io.anuke.mindustry.entities.type.*;
+import io.anuke.mindustry.game.EventType.*;
+import io.anuke.mindustry.io.*;
+import io.anuke.mindustry.net.Packets.*;
+
+import java.io.*;
+
+import static io.anuke.mindustry.Vars.*;
+
+/**
+ * Caches the compressed map data sent to joining players, so a burst of joins only writes and compresses the map once.
+ * The map is written on the main thread, as tiles are only safe to read there; save versions that compress their map in chunks
+ * encode the chunks on their worker pool, otherwise it is compressed on a separate thread with the codec from {@link #getCodec()}.
+ * Tiles that change after the map was written are logged, and their current state is sent along with the cached map.
+ * This includes tile entities whose items, liquids, power, configuration or health changed, tracked with their sync dirty flags.
+ */
+public class WorldDataCache{
+    /** Time after which the cached map is rebuilt, in milliseconds, as tile entity state that is not tracked, such as crafting progress, goes stale. */
+    private static final long maxAge = 5 * 60 * 1000;
+    /** Amount of changed tiles after which the cached map is rebuilt. */
+    private static final int maxChanges = 2000;
+
+    private final IntSet changes = new IntSet();
+    private SaveCodec codec = SaveCodec.deflate;
+    private final Array<Player> waiting = new Array<>();
+    /** the compressed map section */
+    private @Nullable byte[] map;
+    private long buildTime;
+    private boolean building;
+    /** incremented when the cache is invalidated, so results of outdated builds are discarded */
+    private int version;
+
+    public WorldDataCache(){
+        Events.on(TileChangeEvent.class, event -> {
+            if(map != null || building){
+                changes.add(event.tile.pos());
+            }
+        });
+
+        Events.on(WorldLoadEvent.class, event -> invalidate());
+    }
+
+    /** Sends the world data to a player. If the map is being compressed, it is sent once that is done. */
+    public void send(Player player){
+        if(!building && (map == null || Time.timeSinceMillis(buildTime) > maxAge || changes.size > maxChanges)){
+            build();
+        }
+
+        if(building){
+            waiting.add(player);
+        }else{
+            recordChanges(false);
+            write(player);
+        }
+    }
+
+    /**
+     * Logs the tile entities that changed since they were last sent in a block snapshot. Must be called before their dirty flags are cleared.
+     * @param clear whether to clear the dirty flags, if block snapshots are not sent.
+     */
+    public void recordChanges(boolean clear){
+        if(map == null && !building) return;
+
+        for(TileEntity entity : tileGroup.all()){
+            if(entity.isSyncDirty()){
+                changes.add(entity.tile.pos());
+                if(clear) entity.clearSyncDirty();
+            }
+        }
+    }
+
+    /** Discards the cached map. */
+    public void invalidate(){
+        version++;
+        map = null;
+        building = false;
+        changes.clear();
+
+        //the players still need their data, so start a new build for them
+        if(!waiting.isEmpty()){
+            build();
+        }
+    }
+
+    /** @return the codec world data is compressed with, set with the "worldcodec" setting. */
+    public static SaveCodec getCodec(){
+        return SaveCodec.valueOf(Core.settings.getString("worldcodec", SaveCodec.deflate.name()));
+    }
+
+    private void build(){
+        long start = Time.nanos();
+        SaveCodec buildCodec = getCodec();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        NetworkIO.writeMap(raw, buildCodec);
+        byte[] bytes = raw.toByteArray();
+        Log.debug("Wrote {0} bytes of map data: main thread paused for {1} ms.", bytes.length, Strings.fixed(Time.timeSinceNanos(start) / 1000000f, 2));
+        int buildVersion = version;
+        //maps that are compressed in chunks by their save version are not compressed again
+        SaveCodec mapCodec = SaveIO.getSaveWriter().isPrecompressed("map") ? SaveCodec.none : buildCodec;
+
+        building = true;
+        changes.clear();
+
+        Threads.daemon(() -> {
+            byte[] section;
+            try{
+                section = NetworkIO.writeSection(mapCodec, bytes);
+            }catch(IOException e){
+                throw new RuntimeException(e);
+            }
+
+            Core.app.post(() -> {
+                if(buildVersion != version) return;
+
+                map = section;
+                codec = buildCodec;
+                buildTime = Time.millis();
+                building = false;
+
+                Log.debug("Packed {0} compressed bytes of world data.", map.length);
+
+                for(Player player : waiting){
+                    write(player);
+                }
+                waiting.clear();
+            });
+        });
+    }
+
+    private void write(Player player){
+        if(player.con == null || !player.con.isConnected() || player.con.hasDisconnected) return;
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        NetworkIO.writeWorld(player, codec, map, changes, stream);
+        WorldStream data = new WorldStream();
+        data.stream = new ByteArrayInputStream(stream.toByteArray());
+        player.con.sendStream(data);
+    }
+}
@@ -69,7 +69,7 @@ public class Weapon{
         this.name = "";
     }
 
-    @Remote(targets = Loc.server, called = Loc.both, unreliable = true)
+    @Remote(targets = Loc.server, called = Loc.both, unreliable = true, batched = true)
     public static void onPlayerShootWeapon(Player player, float x, float y, float rotation, boolean left){
 
         if(player == null) return;
@@ -82,7 +82,7 @@ public class Weapon{
         shootDirect(player, x, y, rotation, left);
     }
 
-    @Remote(targets = Loc.server, called = Loc.both, unreliable = true)
+    @Remote(targets = Loc.server, called = Loc.both, unreliable = true, batched = true)
     public static void onGenericShootWeapon(ShooterTrait shooter, float x, float y, float rotation, boolean left){
         if(shooter == null) return;
         shootDirect(shooter, x, y, rotation, left);
@@ -219,6 +219,8 @@ public class SettingsMenuDialog extends SettingsDialog{
             }
         }*/
         game.sliderPref("saveinterval", 60, 10, 5 * 120, 10, i -> Core.bundle.format("setting.seconds", i));
+        game.checkPref("fastautosave", false);
+        game.sliderPref("journalinterval", 5, 0, 60, 1, i -> i == 0 ? Core.bundle.get("off") : Core.bundle.format("setting.seconds", i));
 
         if(!mobile){
             game.sliderPref("blockselecttimeout", 750, 0, 2000, 50, i -> Core.bundle.format("setting.milliseconds", i));
@@ -114,7 +114,7 @@ public class ForceProjector extends Block{
 /*
         if(entity.power.status < relativePowerDraw){
             entity.warmup = Mathf.lerpDelta(entity.warmup, 0f, 0.15f);
-            entity.power.status = 0f;
+            entity.power.setStatus(0f);
             if(entity.warmup <= 0.09f){
                 entity.broken = true;
             }
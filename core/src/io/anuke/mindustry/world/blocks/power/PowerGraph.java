@@ -118,7 +118,7 @@ public class PowerGraph{
         for(Tile battery : batteries){
             Consumers consumes = battery.block().consumes;
             if(consumes.hasPower()){
-                battery.entity.power.status *= (1f-consumedPowerPercentage);
+                battery.entity.power.setStatus(battery.entity.power.status * (1f-consumedPowerPercentage));
             }
         }
         return used;
@@ -135,7 +135,7 @@ public class PowerGraph{
             if(consumes.hasPower()){
                 ConsumePower consumePower = consumes.getPower();
                 if(consumePower.capacity > 0f){
-                    battery.entity.power.status += (1f-battery.entity.power.status) * chargedPercent;
+                    battery.entity.power.setStatus(battery.entity.power.status + (1f-battery.entity.power.status) * chargedPercent);
                 }
             }
         }
@@ -153,18 +153,16 @@ public class PowerGraph{
                     if(!Mathf.zero(consumePower.capacity)){
                         // Add an equal percentage of power to all buffers, based on the global power coverage in this graph
                         float maximumRate = consumePower.requestedPower(consumer.entity) * coverage * consumer.entity.delta();
-                        consumer.entity.power.status = Mathf.clamp(consumer.entity.power.status + maximumRate / consumePower.capacity);
+                        consumer.entity.power.setStatus(Mathf.clamp(consumer.entity.power.status + maximumRate / consumePower.capacity));
                     }
                 }else{
                     //valid consumers get power as usual
                     if(otherConsumersAreValid(consumer, consumePower)){
-                        consumer.entity.power.status = coverage;
+                        consumer.entity.power.setStatus(coverage);
                     }else{ //invalid consumers get an estimate, if they were to activate
-                        consumer.entity.power.status = Math.min(1, produced / (needed + consumePower.usage * consumer.entity.delta()));
+                        float status = Math.min(1, produced / (needed + consumePower.usage * consumer.entity.delta()));
                         //just in case
-                        if(Float.isNaN(consumer.entity.power.status)){
-                            consumer.entity.power.status = 0f;
-                        }
+                        consumer.entity.power.setStatus(Float.isNaN(status) ? 0f : status);
                     }
                 }
             }
@@ -177,7 +175,7 @@ public class PowerGraph{
         }else if(!consumers.isEmpty() && consumers.first().isEnemyCheat()){
             //when cheating, just set status to 1
             for(Tile tile : consumers){
-                tile.entity.power.status = 1f;
+                tile.entity.power.setStatus(1f);
             }
 
             lastPowerNeeded = lastPowerProduced = 1f;
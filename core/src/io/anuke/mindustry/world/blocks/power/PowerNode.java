@@ -46,7 +46,11 @@ public class PowerNode extends PowerBlock{
         if(contains){
             //unlink
             entity.power.links.removeValue(value);
-            if(valid) other.entity.power.links.removeValue(tile.pos());
+            entity.power.changed();
+            if(valid){
+                other.entity.power.links.removeValue(tile.pos());
+                other.entity.power.changed();
+            }
 
             PowerGraph newgraph = new PowerGraph();
 
@@ -63,12 +67,14 @@ public class PowerNode extends PowerBlock{
 
             if(!entity.power.links.contains(other.pos())){
                 entity.power.links.add(other.pos());
+                entity.power.changed();
             }
 
             if(other.getTeamID() == tile.getTeamID()){
 
                 if(!other.entity.power.links.contains(tile.pos())){
                     other.entity.power.links.add(tile.pos());
+                    other.entity.power.changed();
                 }
             }
 
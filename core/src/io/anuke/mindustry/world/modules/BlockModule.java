@@ -4,6 +4,18 @@ import java.io.*;
 
 /** A class that represents compartmentalized tile entity state. */
 public abstract class BlockModule{
+    /** Incremented whenever the state of this module changes. Modules may be shared between entities, so each one compares this to the last value it has seen. */
+    protected int version;
+
+    public int version(){
+        return version;
+    }
+
+    /** Marks the state of this module as changed, for state that is modified directly. */
+    public void changed(){
+        version++;
+    }
+
     public abstract void write(DataOutput stream) throws IOException;
 
     public abstract void read(DataInput stream) throws IOException;
@@ -39,6 +39,7 @@ public class LiquidModule extends BlockModule{
         liquids[liquid.id] = amount;
         total = amount;
         current = liquid;
+        version++;
     }
 
     public float currentAmount(){
@@ -52,12 +53,14 @@ public class LiquidModule extends BlockModule{
     public void clear(){
         total = 0;
         Arrays.fill(liquids, 0);
+        version++;
     }
 
     public void add(Liquid liquid, float amount){
         liquids[liquid.id] += amount;
         total += amount;
         current = liquid;
+        version++;
     }
 
     public void remove(Liquid liquid, float amount){
@@ -112,6 +115,7 @@ public class LiquidModule extends BlockModule{
             }
             this.total += amount;
         }
+        version++;
     }
 
     public interface LiquidConsumer{
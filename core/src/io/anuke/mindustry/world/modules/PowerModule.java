@@ -17,6 +17,14 @@ public class PowerModule extends BlockModule{
     public PowerGraph graph = new PowerGraph();
     public IntArray links = new IntArray();
 
+    /** Sets the status, and marks this module as changed if it is different. Links are modified directly, followed by {@link #changed()}. */
+    public void setStatus(float status){
+        if(this.status != status){
+            this.status = status;
+            version++;
+        }
+    }
+
     @Override
     public void write(DataOutput stream) throws IOException{
         stream.writeShort(links.size);
@@ -34,5 +42,6 @@ public class PowerModule extends BlockModule{
         }
         status = stream.readFloat();
         if(Float.isNaN(status) || Float.isInfinite(status)) status = 0f;
+        version++;
     }
 }
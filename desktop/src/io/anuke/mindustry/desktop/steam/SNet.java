@@ -184,6 +184,16 @@ public class SNet implements SteamNetworkingCallback, SteamMatchmakingCallback,
         Core.app.post(() -> Core.app.post(() -> Core.app.post(() -> Log.info("Server: {0}\nClient: {1}\nActive: {2}", net.server(), net.client(), net.active()))));
     }
 
+    @Override
+    public int getQueuedPackets(){
+        return provider.getQueuedPackets();
+    }
+
+    @Override
+    public long getDrainTime(){
+        return provider.getDrainTime();
+    }
+
     public void updateLobby(){
         if(currentLobby != null && net.server()){
             smat.setLobbyType(currentLobby, Core.settings.getBool("publichost") ? LobbyType.Public : LobbyType.FriendsOnly);
@@ -19,7 +19,6 @@ import org.robovm.objc.block.*;
 
 import java.io.*;
 import java.util.*;
-import java.util.zip.*;
 
 import static io.anuke.mindustry.Vars.*;
 import static org.robovm.apple.foundation.NSPathUtilities.getDocumentsDirectory;
@@ -204,7 +203,7 @@ public class IOSLauncher extends IOSApplication.Delegate{
 
                 if(SaveIO.isSaveValid(file)){
                     try{
-                        SaveMeta meta = SaveIO.getMeta(new DataInputStream(new InflaterInputStream(file.read(Streams.DEFAULT_BUFFER_SIZE))));
+                        SaveMeta meta = SaveIO.getMeta(SaveIO.getStream(file, "meta"));
                         if(meta.tags.containsKey("name")){
                             //is map
                             if(!ui.editor.isShown()){
@@ -12,6 +12,7 @@ import io.anuke.arc.util.Timer.*;
 import io.anuke.arc.util.serialization.*;
 import io.anuke.arc.util.serialization.JsonValue.*;
 import io.anuke.mindustry.*;
+import io.anuke.mindustry.ai.Pathfinder.*;
 import io.anuke.mindustry.core.GameState.*;
 import io.anuke.mindustry.core.*;
 import io.anuke.mindustry.entities.*;
@@ -65,6 +66,14 @@ public class ServerControl implements ApplicationListener{
             "port", port,
             "logging", true,
             "socket", false,
+            "pathfinderthreads", 1,
+            "hierarchicalpaths", false,
+            "updatethreads", 1,
+            "deltasnapshots", false,
+            "interestsync", false,
+            "interestmargin", 80,
+            "syncthreads", 0,
+            "worldcodec", "deflate",
             "globalrules", "{reactorExplosions: false}"
         );
 
@@ -152,6 +161,11 @@ public class ServerControl implements ApplicationListener{
             maps.setShuffleMode(ShuffleMode.all);
         }
 
+        pathfinder.setThreads(Core.settings.getInt("pathfinderthreads"));
+        pathfinder.setHierarchical(Core.settings.getBool("hierarchicalpaths"));
+        logic.setUpdateThreads(Core.settings.getInt("updatethreads"));
+        netServer.setSyncThreads(Core.settings.getInt("syncthreads"));
+
         Events.on(GameOverEvent.class, event -> {
             if(inExtraRound) return;
             if(state.rules.waves){
@@ -320,6 +334,16 @@ public class ServerControl implements ApplicationListener{
                 }
 
                 info("  &ly{0} FPS, {1} MB used.", (int)(60f / Time.delta()), Core.app.getJavaHeap() / 1024 / 1024);
+                info("  &ly{0} packets queued, last batch handled in {1} ms.", net.getQueuedPackets(), Strings.fixed(net.getDrainTime() / 1000000f, 2));
+
+                for(Team team : Team.all){
+                    for(PathTarget target : PathTarget.all){
+                        long age = pathfinder.fieldAge(team, target);
+                        if(age >= 0){
+                            info("  &lyPath to {0} for team {1} updated {2} ms ago.", target, team, age);
+                        }
+                    }
+                }
 
                 if(playerGroup.size() > 0){
                     info("  &lyPlayers: {0}", playerGroup.size());
@@ -485,6 +509,49 @@ public class ServerControl implements ApplicationListener{
             }
         });
 
+        handler.register("pathfinderthreads", "[amount]", "Set the amount of threads used to calculate unit paths. Takes effect on the next map.", arg -> {
+            if(arg.length == 0){
+                info("Pathfinder threads are currently &lc{0}.", pathfinder.getThreads());
+                return;
+            }
+
+            if(Strings.canParsePostiveInt(arg[0]) && Strings.parseInt(arg[0]) > 0){
+                int threads = Strings.parseInt(arg[0]);
+                pathfinder.setThreads(threads);
+                Core.settings.putSave("pathfinderthreads", threads);
+                info("Pathfinder threads are now &lc{0}.", threads);
+            }else{
+                err("Amount must be a number above 0.");
+            }
+        });
+
+        handler.register("updatethreads", "[amount]", "Set the amount of threads used to update entities. Experimental.", arg -> {
+            if(arg.length == 0){
+                info("Entity update threads are currently &lc{0}.", logic.getUpdateThreads());
+                return;
+            }
+
+            if(Strings.canParsePostiveInt(arg[0]) && Strings.parseInt(arg[0]) > 0){
+                int threads = Strings.parseInt(arg[0]);
+                logic.setUpdateThreads(threads);
+                Core.settings.putSave("updatethreads", threads);
+                info("Entity update threads are now &lc{0}.", threads);
+            }else{
+                err("Amount must be a number above 0.");
+            }
+        });
+
+        handler.register("hierarchicalpaths", "[on/off]", "Enable/disable hierarchical pathfinding, which scales better on very large maps. Takes effect on the next map.", arg -> {
+            if(arg.length == 0){
+                info("Hierarchical pathfinding is currently &lc{0}.", pathfinder.isHierarchical() ? "on" : "off");
+                return;
+            }
+            boolean on = arg[0].equalsIgnoreCase("on");
+            pathfinder.setHierarchical(on);
+            Core.settings.putSave("hierarchicalpaths", on);
+            info("Hierarchical pathfinding is now &lc{0}.", on ? "on" : "off");
+        });
+
         handler.register("whitelist", "[on/off...]", "Enable/disable whitelisting.", arg -> {
             if(arg.length == 0){
                 info("Whitelist is currently &lc{0}.", netServer.admins.isWhitelistEnabled() ? "on" : "off");
@@ -537,6 +604,52 @@ public class ServerControl implements ApplicationListener{
             info("Block syncing is now &lc{0}.", on ? "on" : "off");
         });
 
+        handler.register("deltasync", "[on/off]", "Enable/disable delta compression of entity snapshots. Experimental.", arg -> {
+            if(arg.length == 0){
+                info("Delta snapshots are currently &lc{0}.", Core.settings.getBool("deltasnapshots") ? "enabled" : "disabled");
+                return;
+            }
+            boolean on = arg[0].equalsIgnoreCase("on");
+            Core.settings.putSave("deltasnapshots", on);
+            info("Delta snapshots are now &lc{0}.", on ? "on" : "off");
+        });
+
+        handler.register("syncthreads", "[amount]", "Set the amount of threads used to encode entity snapshots. 0 encodes them on the main thread. Experimental.", arg -> {
+            if(arg.length == 0){
+                info("Snapshot encoding threads are currently &lc{0}.", netServer.getSyncThreads());
+                return;
+            }
+
+            if(Strings.canParseInt(arg[0]) && Strings.parseInt(arg[0]) >= 0){
+                int threads = Strings.parseInt(arg[0]);
+                netServer.setSyncThreads(threads);
+                Core.settings.putSave("syncthreads", threads);
+                info("Snapshot encoding threads are now &lc{0}.", threads);
+            }else{
+                err("Amount must be a number, 0 or above.");
+            }
+        });
+
+        handler.register("interestsync", "[on/off] [margin]", "Only sync units near each player's view, with a margin in world units. Experimental.", arg -> {
+            if(arg.length == 0){
+                info("Interest sync is currently &lc{0}&lg, with a margin of &lc{1}&lg.", Core.settings.getBool("interestsync") ? "enabled" : "disabled", Core.settings.getInt("interestmargin"));
+                return;
+            }
+
+            if(arg.length > 1){
+                if(Strings.canParsePostiveInt(arg[1])){
+                    Core.settings.putSave("interestmargin", Strings.parseInt(arg[1]));
+                }else{
+                    err("Margin must be a positive number.");
+                    return;
+                }
+            }
+
+            boolean on = arg[0].equalsIgnoreCase("on");
+            Core.settings.putSave("interestsync", on);
+            info("Interest sync is now &lc{0}&lg, with a margin of &lc{1}&lg.", on ? "on" : "off", Core.settings.getInt("interestmargin"));
+        });
+
         handler.register("crashreport", "<on/off>", "Disables or enables automatic crash reporting", arg -> {
             boolean value = arg[0].equalsIgnoreCase("on");
             Core.settings.put("crashreport", value);
@@ -792,9 +905,69 @@ public class ServerControl implements ApplicationListener{
 
             FileHandle file = saveDirectory.child(arg[0] + "." + saveExtension);
 
+            Core.app.post(() -> SaveIO.saveAsync(file, () -> info("Saved to {0}.", file), e -> {
+                err("Failed to save to {0}.", file);
+                Log.err(e);
+            }));
+        });
+
+        handler.register("worldcodec", "[none/deflate/lz4]", "Set the compression codec of the world data sent to joining players.", arg -> {
+            if(arg.length == 0){
+                info("World data codec is currently &lc{0}.", Core.settings.getString("worldcodec"));
+                return;
+            }
+
+            try{
+                SaveCodec codec = SaveCodec.valueOf(arg[0]);
+                Core.settings.putSave("worldcodec", codec.name());
+                info("World data codec is now &lc{0}&lg; it is used once the cached world data is rebuilt.", codec);
+            }catch(IllegalArgumentException e){
+                err("Invalid codec.");
+            }
+        });
+
+        handler.register("savebench", "[runs]", "Measure the size and compress/decompress time of the serialized current world with each save codec.", arg -> {
+            if(state.is(State.menu)){
+                err("Not hosting. Host a game first.");
+                return;
+            }
+
+            int runs = arg.length > 0 && Strings.canParsePostiveInt(arg[0]) ? Strings.parseInt(arg[0]) : 5;
+
+            //the world can only be serialized on the main thread
             Core.app.post(() -> {
-                SaveIO.save(file);
-                info("Saved to {0}.", file);
+                info("Benchmarking {0}x{1} world over {2} runs:", world.width(), world.height(), runs);
+
+                //serialize once without compression, so the codecs are timed on the same bytes, including the regions save versions compress themselves
+                long start = Time.nanos();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                SaveIO.write(bytes, null, SaveCodec.none);
+                byte[] raw = bytes.toByteArray();
+                info("  Serialized &lc{0}&lg bytes in &lc{1}&lg ms.", raw.length, Strings.fixed(Time.timeSinceNanos(start) / 1000000f, 2));
+
+                try{
+                    for(SaveCodec codec : SaveCodec.all){
+                        long encode = 0, decode = 0;
+                        int size = 0;
+
+                        for(int i = 0; i < runs; i++){
+                            start = Time.nanos();
+                            byte[] compressed = codec.compress(raw, 0, raw.length);
+                            encode += Time.timeSinceNanos(start);
+                            size = compressed.length;
+
+                            start = Time.nanos();
+                            codec.decompress(compressed, raw.length);
+                            decode += Time.timeSinceNanos(start);
+                        }
+
+                        info("  &lc{0}&lg: &lc{1}&lg bytes, compressed in &lc{2}&lg ms, decompressed in &lc{3}&lg ms.", codec, size,
+                            Strings.fixed(encode / 1000000f / runs, 2), Strings.fixed(decode / 1000000f / runs, 2));
+                    }
+                }catch(IOException e){
+                    err("Failed to benchmark save codecs.");
+                    Log.err(e);
+                }
             });
         });
 
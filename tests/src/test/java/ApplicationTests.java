@@ -1,7 +1,9 @@
 import io.anuke.arc.ApplicationCore;
 import io.anuke.arc.Core;
+import io.anuke.arc.Events;
 import io.anuke.arc.backends.headless.HeadlessApplication;
 import io.anuke.arc.collection.*;
+import io.anuke.arc.files.FileHandle;
 import io.anuke.arc.math.geom.Point2;
 import io.anuke.arc.util.Log;
 import io.anuke.arc.util.Time;
@@ -9,11 +11,16 @@ import io.anuke.mindustry.Vars;
 import io.anuke.mindustry.content.*;
 import io.anuke.mindustry.core.GameState.State;
 import io.anuke.mindustry.core.*;
+import io.anuke.mindustry.entities.EntityGroup;
+import io.anuke.mindustry.entities.ParallelUpdater;
 import io.anuke.mindustry.entities.traits.BuilderTrait.BuildRequest;
 import io.anuke.mindustry.entities.type.BaseUnit;
+import io.anuke.mindustry.entities.type.Bullet;
+import io.anuke.mindustry.entities.type.EffectEntity;
 import io.anuke.mindustry.entities.type.base.*;
+import io.anuke.mindustry.game.EventType.TileChangeEvent;
 import io.anuke.mindustry.game.Team;
-import io.anuke.mindustry.io.SaveIO;
+import io.anuke.mindustry.io.*;
 import io.anuke.mindustry.maps.Map;
 import io.anuke.mindustry.net.*;
 import io.anuke.mindustry.type.ContentType;
@@ -22,6 +29,9 @@ import io.anuke.mindustry.world.*;
 import io.anuke.mindustry.world.blocks.BlockPart;
 import org.junit.jupiter.api.*;
 
+import java.io.*;
+import java.util.Arrays;
+
 import static io.anuke.mindustry.Vars.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -195,6 +205,90 @@ public class ApplicationTests{
         assertEquals(runs, total[0]);
     }
 
+    @Test
+    void groupRemoval(){
+        EntityGroup<EffectEntity> group = new EntityGroup<>(0, EffectEntity.class, false);
+        Array<EffectEntity> removed = new Array<>();
+        int amount = 10000;
+
+        for(int i = 0; i < amount; i++){
+            EffectEntity entity = new EffectEntity();
+            group.add(entity);
+            if(i % 2 == 0) removed.add(entity);
+        }
+        group.updateEvents();
+        assertEquals(amount, group.size());
+
+        group.removeAll(removed);
+        //removing and re-adding in the same update keeps the entity
+        group.remove(group.all().get(1));
+        group.add(group.all().get(1));
+        group.updateEvents();
+
+        assertEquals(amount / 2, group.size());
+        for(int i = 0; i < group.size(); i++){
+            EffectEntity entity = group.all().get(i);
+            assertEquals(i, entity.getGroupIndex());
+            assertFalse(removed.contains(entity, true));
+        }
+        for(EffectEntity entity : removed){
+            assertEquals(-1, entity.getGroupIndex());
+        }
+
+        group.removeAll(e -> true);
+        group.updateEvents();
+        assertTrue(group.isEmpty());
+    }
+
+    @Test
+    void parallelUpdate(){
+        world.loadMap(testMap);
+        ParallelUpdater updater = new ParallelUpdater(4);
+        int amount = 1000;
+
+        try{
+            //outside of the world, so no tiles are hit; every other bullet expires on its first update
+            for(int i = 0; i < amount; i++){
+                Bullet.create(Bullets.standardCopper, null, Team.sharded, -1000f, -1000f - i, 0f, 1f, i % 2 == 0 ? 0.001f : 1f);
+            }
+
+            updater.update(bulletGroup);
+            assertEquals(amount, bulletGroup.size());
+
+            //removals recorded in the command buffers are processed by the next update
+            updater.update(bulletGroup);
+            assertEquals(amount / 2, bulletGroup.size());
+            for(Bullet bullet : bulletGroup.all()){
+                assertTrue(bullet.fin() < 1f);
+            }
+        }finally{
+            updater.dispose();
+            bulletGroup.clear();
+        }
+    }
+
+    @Test
+    void quantizedSync() throws IOException{
+        world.loadMap(testMap);
+
+        BaseUnit unit = UnitTypes.dagger.create(Team.crux);
+        unit.set(123.456f, world.height() * tilesize - 7.89f);
+        unit.rotation = 271.3f;
+
+        ByteArrayOutputStream full = new ByteArrayOutputStream(), quantized = new ByteArrayOutputStream();
+        unit.writeSave(new DataOutputStream(full), false);
+        unit.writeSync(new DataOutputStream(quantized));
+        assertTrue(quantized.size() < full.size());
+
+        BaseUnit read = UnitTypes.dagger.create(Team.sharded);
+        read.readSync(new DataInputStream(new ByteArrayInputStream(quantized.toByteArray())), unit.version());
+
+        assertEquals(Team.crux, read.getTeam());
+        assertEquals(unit.x, read.x, SyncIO.precision(world.width()));
+        assertEquals(unit.y, read.y, SyncIO.precision(world.height()));
+        assertEquals(unit.rotation, read.rotation, 360f / 256f);
+    }
+
     @Test
     void save(){
         world.loadMap(testMap);
@@ -216,6 +310,121 @@ public class ApplicationTests{
         assertTrue(state.teams.get(defaultTeam).cores.size > 0);
     }
 
+    @Test
+    void saveCodecs(){
+        world.loadMap(testMap);
+        FileHandle file = saveDirectory.child("0.msav");
+
+        for(SaveCodec codec : SaveCodec.all){
+            SaveIO.write(file, null, codec);
+            resetWorld();
+            SaveIO.load(file);
+
+            assertEquals(testMap.width, world.width());
+            assertEquals(testMap.height, world.height());
+            assertTrue(state.teams.get(defaultTeam).cores.size > 0);
+        }
+    }
+
+    @Test
+    void readSaveMeta(){
+        world.loadMap(testMap);
+        FileHandle file = saveDirectory.child("0.msav");
+
+        SaveIO.save(file);
+        assertTrue(SaveContainer.isContainer(file));
+        SaveMeta meta = SaveIO.getMeta(file);
+
+        assertEquals(world.width(), meta.tags.getInt("width"));
+        assertEquals(world.height(), meta.tags.getInt("height"));
+        assertEquals(state.wave, meta.wave);
+    }
+
+    @Test
+    void saveJournal() throws IOException{
+        world.loadMap(testMap);
+        FileHandle file = saveDirectory.child("journal.msav");
+        FileHandle journalFile = SaveJournal.fileFor(file);
+        SaveJournal journal = new SaveJournal();
+
+        journal.snapshot(file, SaveCodec.deflate, () -> {}, e -> Log.err(e));
+        SaveIO.awaitWrites();
+        assertTrue(journal.isActive());
+
+        //linear tile indices, in the order tiles are stored
+        int first = emptyTile(0), second = emptyTile(first + 1), third = emptyTile(second + 1);
+
+        indexTile(first).setBlock(Blocks.copperWall, defaultTeam);
+        Events.fire(new TileChangeEvent(indexTile(first)));
+        state.wave = 7;
+        journal.append();
+
+        indexTile(second).setBlock(Blocks.titaniumWall, defaultTeam);
+        Events.fire(new TileChangeEvent(indexTile(second)));
+        journal.append();
+        SaveIO.awaitWrites();
+
+        byte[] bytes = journalFile.readBytes();
+
+        assertEquals(2, replayJournal(file, journal));
+        assertEquals(Blocks.copperWall, indexTile(first).block());
+        assertEquals(Blocks.titaniumWall, indexTile(second).block());
+        assertEquals(7, state.wave);
+
+        //a segment that was not fully written is ignored
+        journalFile.writeBytes(Arrays.copyOf(bytes, bytes.length - 3), false);
+        assertEquals(1, replayJournal(file, journal));
+        assertEquals(Blocks.copperWall, indexTile(first).block());
+        assertEquals(Blocks.air, indexTile(second).block());
+
+        //and cut off, so segments appended after it are replayed
+        indexTile(third).setBlock(Blocks.copperWall, defaultTeam);
+        Events.fire(new TileChangeEvent(indexTile(third)));
+        journal.append();
+        SaveIO.awaitWrites();
+
+        assertEquals(2, replayJournal(file, journal));
+        assertEquals(Blocks.copperWall, indexTile(first).block());
+        assertEquals(Blocks.air, indexTile(second).block());
+        assertEquals(Blocks.copperWall, indexTile(third).block());
+
+        //so is a segment with a bad checksum
+        byte[] corrupted = Arrays.copyOf(bytes, bytes.length);
+        corrupted[corrupted.length - 1] ^= 1;
+        journalFile.writeBytes(corrupted, false);
+        assertEquals(1, replayJournal(file, journal));
+        assertEquals(Blocks.air, indexTile(second).block());
+        assertEquals(Blocks.air, indexTile(third).block());
+
+        //the journal of another full save is not replayed at all
+        byte[] other = Arrays.copyOf(bytes, bytes.length);
+        other[SaveJournal.snapshotOffset] ^= 1;
+        journalFile.writeBytes(other, false);
+        assertEquals(0, replayJournal(file, journal));
+        assertEquals(Blocks.air, indexTile(first).block());
+    }
+
+    int replayJournal(FileHandle file, SaveJournal journal) throws IOException{
+        resetWorld();
+        SaveIO.load(file);
+        return journal.load(file, SaveIO.getMeta(file));
+    }
+
+    /** @return the linear index of the first tile from a linear index that has no block and can be built on. */
+    int emptyTile(int from){
+        for(int i = from; i < world.width() * world.height(); i++){
+            Tile tile = indexTile(i);
+            if(tile.block() == Blocks.air && !tile.floor().isDeep()){
+                return i;
+            }
+        }
+        throw new IllegalStateException("No empty tile in the test map.");
+    }
+
+    Tile indexTile(int index){
+        return world.rawTile(index % world.width(), index / world.width());
+    }
+
     @Test
     void load77Save(){
         resetWorld();